@@ -0,0 +1,168 @@
+package paxel.lib;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a batch of Callables in chunks and completes a single future for the
+ * whole batch. Each chunk is one Runnable in the executor, that calls its
+ * Callables one after the other. A chunk stops as soon as the future is
+ * done, so the rest of a failed, cancelled or (for any) succeeded batch is
+ * not called anymore.
+ *
+ * @param <V> the result type of the Callables.
+ * @param <R> the result type of the batch.
+ */
+abstract class BatchCompleter<V, R> {
+
+    private final Callable<V>[] tasks;
+
+    // the number of tasks, that were neither called nor skipped
+    private final AtomicInteger remaining;
+
+    final CompletableFuture<R> future = new CompletableFuture<>();
+
+    private BatchCompleter(Collection<? extends Callable<V>> tasks) {
+        this.tasks = toArray(tasks);
+        this.remaining = new AtomicInteger(this.tasks.length);
+    }
+
+    /**
+     * Completes with the results of all tasks, in the order of the tasks, or
+     * with the first failure.
+     */
+    static <V> CompletableFuture<List<V>> all(Collection<? extends Callable<V>> tasks, int chunkSize, Executor executor) {
+        if (tasks.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return new All<>(tasks).start(chunkSize, executor);
+    }
+
+    /**
+     * Completes with the result of the first successful task, or with the
+     * last failure if all tasks failed.
+     */
+    static <V> CompletableFuture<V> any(Collection<? extends Callable<V>> tasks, int chunkSize, Executor executor) {
+        if (tasks.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("No tasks"));
+        }
+        return new Any<>(tasks).start(chunkSize, executor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Callable<V>[] toArray(Collection<? extends Callable<V>> tasks) {
+        return (Callable<V>[]) tasks.toArray(new Callable<?>[0]);
+    }
+
+    final int count() {
+        return tasks.length;
+    }
+
+    final CompletableFuture<R> start(int chunkSize, Executor executor) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size must be positive but was " + chunkSize);
+        }
+        for (int i = 0; i < tasks.length && !future.isDone(); i += chunkSize) {
+            final int from = i;
+            final int to = Math.min(tasks.length, from + chunkSize);
+            try {
+                executor.execute(() -> run(from, to));
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
+
+    private void run(int from, int to) {
+        for (int i = from; i < to && !future.isDone(); i++) {
+            Throwable failure = null;
+            try {
+                succeeded(i, tasks[i].call());
+            } catch (Throwable t) {
+                failure = t;
+                failed(t);
+            }
+            if (remaining.decrementAndGet() == 0) {
+                finished(failure);
+            }
+        }
+    }
+
+    /**
+     * Called with the result of the task at the index.
+     */
+    abstract void succeeded(int index, V result);
+
+    /**
+     * Called with the failure of a task.
+     */
+    abstract void failed(Throwable failure);
+
+    /**
+     * Called after the last task, with its failure or null.
+     */
+    abstract void finished(Throwable lastFailure);
+
+    private static final class All<V> extends BatchCompleter<V, List<V>> {
+
+        private final Object[] results;
+
+        private All(Collection<? extends Callable<V>> tasks) {
+            super(tasks);
+            this.results = new Object[count()];
+        }
+
+        @Override
+        void succeeded(int index, V result) {
+            results[index] = result;
+        }
+
+        @Override
+        void failed(Throwable failure) {
+            future.completeExceptionally(failure);
+        }
+
+        @Override
+        void finished(Throwable lastFailure) {
+            future.complete(results());
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<V> results() {
+            return Collections.unmodifiableList(Arrays.asList((V[]) results));
+        }
+    }
+
+    private static final class Any<V> extends BatchCompleter<V, V> {
+
+        private Any(Collection<? extends Callable<V>> tasks) {
+            super(tasks);
+        }
+
+        @Override
+        void succeeded(int index, V result) {
+            future.complete(result);
+        }
+
+        @Override
+        void failed(Throwable failure) {
+            // only the last failure counts
+        }
+
+        @Override
+        void finished(Throwable lastFailure) {
+            if (lastFailure != null) {
+                // all failed, otherwise the future would be done already
+                future.completeExceptionally(lastFailure);
+            }
+        }
+    }
+}
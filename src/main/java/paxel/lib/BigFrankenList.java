@@ -0,0 +1,343 @@
+package paxel.lib;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * The BigFrankenList is a FrankenList with long indices, for more than
+ * {@link Integer#MAX_VALUE} elements. It is one level above the FrankenList:
+ * the elements are kept in FrankenList shards of limited size, that are found
+ * via an ArrayList and have a global start index of type long. A full shard is
+ * cut in half with {@link FrankenList#splitAt(int)}, which moves sections
+ * instead of elements, and shards that became small are merged with
+ * {@link FrankenList#appendAll(FrankenList)}.
+ * <p>
+ * The BigFrankenList is not a {@link List}, because a List is limited to int
+ * indices. {@link #window(long, int)} gives a List view of a range of it.
+ *
+ * @param <E> the element type.
+ */
+public class BigFrankenList<E> implements Iterable<E> {
+
+    private final int sectionSizeLimit;
+
+    private final int shardSizeLimit;
+
+    private final ArrayList<Shard<E>> shards = new ArrayList<>();
+
+    private long size;
+
+    private int modCount;
+
+    /**
+     * Creates a list with sections of 750 elements and shards of 2^28
+     * elements.
+     */
+    public BigFrankenList() {
+        this(750, 1 << 28);
+    }
+
+    /**
+     * Creates a list.
+     *
+     * @param sectionSizeLimit The maximum size of a section.
+     * @param shardSizeLimit   The maximum size of a shard.
+     */
+    public BigFrankenList(int sectionSizeLimit, int shardSizeLimit) {
+        if (shardSizeLimit < 2 || shardSizeLimit > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("The shard size limit must be between 2 and " + Integer.MAX_VALUE / 2 + " but was " + shardSizeLimit);
+        }
+        this.sectionSizeLimit = sectionSizeLimit;
+        this.shardSizeLimit = shardSizeLimit;
+    }
+
+    /**
+     * @return the number of elements.
+     */
+    public long sizeLong() {
+        return size;
+    }
+
+    /**
+     * @return true if the list contains no elements.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Retrieves the element at the index.
+     *
+     * @param index The index.
+     * @return the element.
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= sizeLong())
+     */
+    public E get(long index) {
+        checkIndex(index);
+        final Shard<E> shard = shards.get(findShard(index));
+        return shard.list.get((int) (index - shard.start));
+    }
+
+    /**
+     * Replaces the element at the index.
+     *
+     * @param index The index.
+     * @param value The new value.
+     * @return the previous element.
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= sizeLong())
+     */
+    public E set(long index, E value) {
+        checkIndex(index);
+        final Shard<E> shard = shards.get(findShard(index));
+        return shard.list.set((int) (index - shard.start), value);
+    }
+
+    /**
+     * Appends the value at the end.
+     *
+     * @param value The value.
+     */
+    public void add(E value) {
+        add(size, value);
+    }
+
+    /**
+     * Inserts the value at the index. The elements at and behind the index are
+     * moved one index up.
+     *
+     * @param index The index.
+     * @param value The value.
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index > sizeLong())
+     */
+    public void add(long index, E value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + size + ']');
+        }
+        if (shards.isEmpty()) {
+            shards.add(new Shard<>(0, new FrankenList<>(sectionSizeLimit)));
+        }
+        final int shardIndex = index == size ? shards.size() - 1 : findShard(index);
+        final Shard<E> shard = shards.get(shardIndex);
+        shard.list.add((int) (index - shard.start), value);
+        shift(shardIndex + 1, 1);
+        size++;
+        modCount++;
+        if (shard.list.size() > shardSizeLimit) {
+            // cut in half, only the sections are moved
+            final int half = shard.list.size() / 2;
+            shards.add(shardIndex + 1, new Shard<>(shard.start + half, shard.list.splitAt(half)));
+        }
+    }
+
+    /**
+     * Removes the element at the index. The elements behind the index are
+     * moved one index down.
+     *
+     * @param index The index.
+     * @return the removed element.
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= sizeLong())
+     */
+    public E remove(long index) {
+        checkIndex(index);
+        final int shardIndex = findShard(index);
+        final Shard<E> shard = shards.get(shardIndex);
+        final E removed = shard.list.remove((int) (index - shard.start));
+        shift(shardIndex + 1, -1);
+        size--;
+        modCount++;
+        if (shard.list.isEmpty()) {
+            shards.remove(shardIndex);
+        } else if (shardIndex > 0) {
+            final Shard<E> previous = shards.get(shardIndex - 1);
+            if (previous.list.size() + shard.list.size() <= shardSizeLimit / 2) {
+                // both are small enough to live in one shard
+                previous.list.appendAll(shard.list);
+                shards.remove(shardIndex);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all elements.
+     */
+    public void clear() {
+        shards.clear();
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Creates a List view of the range. Elements can be read, replaced, added
+     * and removed through the view, which grows and shrinks accordingly. The
+     * view fails with a {@link ConcurrentModificationException} if the list
+     * was modified by other means after its creation.
+     *
+     * @param from   The index of the first element of the view.
+     * @param length The initial size of the view.
+     * @return the view.
+     * @throws IndexOutOfBoundsException if the range is out of the list.
+     */
+    public List<E> window(long from, int length) {
+        if (from < 0 || length < 0 || from + length > size) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + (from + length) + " is outside of [0 to " + size + ']');
+        }
+        return new Window(from, length);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private final int expectedModCount = modCount;
+            private int shard;
+            private Iterator<E> current = shards.isEmpty() ? null : shards.getFirst().list.iterator();
+
+            @Override
+            public boolean hasNext() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                while (current != null && !current.hasNext()) {
+                    current = ++shard < shards.size() ? shards.get(shard).list.iterator() : null;
+                }
+                return current != null;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * @return the number of shards.
+     */
+    int shardCount() {
+        return shards.size();
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + size + '[');
+        }
+    }
+
+    private void shift(int from, long delta) {
+        for (int i = from; i < shards.size(); i++) {
+            shards.get(i).start += delta;
+        }
+    }
+
+    private int findShard(long index) {
+        int low = 0;
+        int high = shards.size() - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (shards.get(mid).start <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static final class Shard<E> {
+
+        private long start;
+        private final FrankenList<E> list;
+
+        private Shard(long start, FrankenList<E> list) {
+            this.start = start;
+            this.list = list;
+        }
+
+        @Override
+        public String toString() {
+            return "Shard{" + "indices " + start + " to " + (start + list.size() - 1) + '}';
+        }
+    }
+
+    private final class Window extends AbstractList<E> implements RandomAccess {
+
+        private final long from;
+        private int length;
+        private int expectedModCount;
+
+        private Window(long from, int length) {
+            this.from = from;
+            this.length = length;
+            this.expectedModCount = BigFrankenList.this.modCount;
+        }
+
+        @Override
+        public E get(int index) {
+            checkModification();
+            checkIndex(index);
+            return BigFrankenList.this.get(from + index);
+        }
+
+        @Override
+        public E set(int index, E element) {
+            checkModification();
+            checkIndex(index);
+            return BigFrankenList.this.set(from + index, element);
+        }
+
+        @Override
+        public void add(int index, E element) {
+            checkModification();
+            if (index < 0 || index > length) {
+                throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + length + ']');
+            }
+            if (length == Integer.MAX_VALUE) {
+                throw new IllegalStateException("The window is full");
+            }
+            BigFrankenList.this.add(from + index, element);
+            length++;
+            modified();
+        }
+
+        @Override
+        public E remove(int index) {
+            checkModification();
+            checkIndex(index);
+            final E removed = BigFrankenList.this.remove(from + index);
+            length--;
+            modified();
+            return removed;
+        }
+
+        @Override
+        public int size() {
+            checkModification();
+            return length;
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + length + '[');
+            }
+        }
+
+        private void modified() {
+            expectedModCount = BigFrankenList.this.modCount;
+            modCount++;
+        }
+
+        private void checkModification() {
+            if (BigFrankenList.this.modCount != expectedModCount) {
+                throw new ConcurrentModificationException("The list was modified after the window was created");
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package paxel.lib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects the modifications of a {@link FrankenList} for its subscribers.
+ * Each subscriber has its own coalescing window: the modifications are
+ * merged into as few {@link FrankenList.Change}s as possible, until the
+ * window is full or the changes are flushed.
+ *
+ * @param <E> the element type of the list.
+ */
+final class ChangeFeed<E> {
+
+    private final List<Subscriber<E>> subscribers = new ArrayList<>();
+
+    void subscribe(int window, Consumer<List<FrankenList.Change<E>>> consumer) {
+        if (window < 1) {
+            throw new IllegalArgumentException("The window must be at least 1 but was " + window);
+        }
+        subscribers.add(new Subscriber<>(window, consumer));
+    }
+
+    boolean unsubscribe(Consumer<List<FrankenList.Change<E>>> consumer) {
+        for (int i = 0; i < subscribers.size(); i++) {
+            if (subscribers.get(i).consumer == consumer) {
+                // deliver what is left
+                subscribers.remove(i).flush();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isEmpty() {
+        return subscribers.isEmpty();
+    }
+
+    void inserted(int index, E value) {
+        inserted(index, Collections.singletonList(value));
+    }
+
+    /**
+     * Publishes the insert of several values at once, as one modification.
+     */
+    void inserted(int index, List<? extends E> values) {
+        for (Subscriber<E> subscriber : subscribers) {
+            subscriber.changes.inserted(index, values);
+            subscriber.modified();
+        }
+    }
+
+    void removed(int index, int count) {
+        for (Subscriber<E> subscriber : subscribers) {
+            subscriber.changes.removed(index, count);
+            subscriber.modified();
+        }
+    }
+
+    void set(int index, E value) {
+        for (Subscriber<E> subscriber : subscribers) {
+            subscriber.changes.set(index, Collections.singletonList(value));
+            subscriber.modified();
+        }
+    }
+
+    /**
+     * Publishes the changes collected for a part of a batch, e.g. a touched
+     * section, as one modification, and clears them.
+     */
+    void publish(Changes<E> changes) {
+        if (changes.pending.isEmpty()) {
+            return;
+        }
+        for (Subscriber<E> subscriber : subscribers) {
+            subscriber.changes.addAll(changes);
+            subscriber.modified();
+        }
+        changes.pending.clear();
+    }
+
+    void flush() {
+        for (Subscriber<E> subscriber : subscribers) {
+            subscriber.flush();
+        }
+    }
+
+    private static final class Subscriber<E> {
+
+        private final int window;
+        private final Consumer<List<FrankenList.Change<E>>> consumer;
+        private final Changes<E> changes = new Changes<>();
+        private int modifications;
+
+        private Subscriber(int window, Consumer<List<FrankenList.Change<E>>> consumer) {
+            this.window = window;
+            this.consumer = consumer;
+        }
+
+        private void modified() {
+            if (++modifications >= window) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            modifications = 0;
+            if (changes.pending.isEmpty()) {
+                return;
+            }
+            final List<FrankenList.Change<E>> delivered = new ArrayList<>(changes.pending.size());
+            for (Pending<E> p : changes.pending) {
+                delivered.add(p.toChange());
+            }
+            changes.pending.clear();
+            consumer.accept(List.copyOf(delivered));
+        }
+    }
+
+    /**
+     * Modifications merged into as few changes as possible. Each change
+     * refers to the list after the previous changes.
+     *
+     * @param <E> the element type of the list.
+     */
+    static final class Changes<E> {
+
+        private final List<Pending<E>> pending = new ArrayList<>();
+
+        void inserted(int index, E value) {
+            inserted(index, Collections.singletonList(value));
+        }
+
+        void inserted(int index, List<? extends E> values) {
+            final Pending<E> last = pending.isEmpty() ? null : pending.getLast();
+            if (last != null && last.type == FrankenList.Change.Type.INSERT
+                    && index >= last.index && index <= last.index + last.values.size()) {
+                // inside or directly around the previous insert
+                last.values.addAll(index - last.index, values);
+            } else {
+                final Pending<E> next = new Pending<>(FrankenList.Change.Type.INSERT, index);
+                next.values.addAll(values);
+                pending.add(next);
+            }
+        }
+
+        void removed(int index, int count) {
+            final Pending<E> last = pending.isEmpty() ? null : pending.getLast();
+            if (last != null && last.type == FrankenList.Change.Type.REMOVE
+                    && (index == last.index || index + count == last.index)) {
+                // removes at the same index or directly in front of the previous
+                last.index = index;
+                last.count += count;
+            } else if (last != null && last.type == FrankenList.Change.Type.INSERT
+                    && index >= last.index && index + count <= last.index + last.values.size()) {
+                // removes only values that were just inserted
+                last.values.subList(index - last.index, index - last.index + count).clear();
+                if (last.values.isEmpty()) {
+                    pending.removeLast();
+                }
+            } else {
+                final Pending<E> next = new Pending<>(FrankenList.Change.Type.REMOVE, index);
+                next.count = count;
+                pending.add(next);
+            }
+        }
+
+        void set(int index, E value) {
+            set(index, Collections.singletonList(value));
+        }
+
+        void set(int index, List<? extends E> values) {
+            final Pending<E> last = pending.isEmpty() ? null : pending.getLast();
+            if (last != null && last.type != FrankenList.Change.Type.REMOVE
+                    && index >= last.index && index + values.size() <= last.index + last.values.size()) {
+                // overwrites values that were just inserted or set
+                for (int i = 0; i < values.size(); i++) {
+                    last.values.set(index - last.index + i, values.get(i));
+                }
+            } else if (last != null && last.type == FrankenList.Change.Type.SET
+                    && index == last.index + last.values.size()) {
+                last.values.addAll(values);
+            } else {
+                final Pending<E> next = new Pending<>(FrankenList.Change.Type.SET, index);
+                next.values.addAll(values);
+                pending.add(next);
+            }
+        }
+
+        private void addAll(Changes<E> changes) {
+            for (Pending<E> p : changes.pending) {
+                switch (p.type) {
+                    case INSERT -> inserted(p.index, p.values);
+                    case REMOVE -> removed(p.index, p.count);
+                    case SET -> set(p.index, p.values);
+                }
+            }
+        }
+    }
+
+    private static final class Pending<E> {
+
+        private final FrankenList.Change.Type type;
+        private int index;
+        private int count;
+        private final List<E> values = new ArrayList<>();
+
+        private Pending(FrankenList.Change.Type type, int index) {
+            this.type = type;
+            this.index = index;
+        }
+
+        private FrankenList.Change<E> toChange() {
+            return switch (type) {
+                case REMOVE -> new FrankenList.Change<>(type, index, count, List.of());
+                // the values might be null
+                case INSERT, SET -> new FrankenList.Change<>(type, index, values.size(),
+                        Collections.unmodifiableList(new ArrayList<>(values)));
+            };
+        }
+    }
+}
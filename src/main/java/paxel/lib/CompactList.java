@@ -0,0 +1,88 @@
+package paxel.lib;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * An immutable List backed by a single array. It is created by
+ * {@link FrankenList#freeze()} for lists that are not modified anymore, and
+ * has true O(1) access without section lookup. {@link #thaw()} creates an
+ * editable FrankenList again.
+ *
+ * @param <E> the element type.
+ */
+public final class CompactList<E> extends AbstractList<E> implements RandomAccess {
+
+    private final Object[] values;
+    private final int sectionSizeLimit;
+
+    CompactList(Object[] values, int sectionSizeLimit) {
+        this.values = values;
+        this.sectionSizeLimit = sectionSizeLimit;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        return (E) values[index];
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return values.clone();
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        for (int i = 0; i < values.length; i++) {
+            action.accept(get(i));
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < values.length;
+            }
+
+            @Override
+            public E next() {
+                if (next >= values.length) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(values, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * Creates an editable FrankenList with the content of this list and the
+     * section size limit of the original list.
+     *
+     * @return the new list.
+     */
+    public FrankenList<E> thaw() {
+        final FrankenList<E> result = new FrankenList<>(sectionSizeLimit);
+        result.addAll(this);
+        return result;
+    }
+}
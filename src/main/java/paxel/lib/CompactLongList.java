@@ -0,0 +1,88 @@
+package paxel.lib;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * An immutable List of Longs backed by a single long array. It is created by
+ * {@link FrankenList#freezeLongs()} for lists that are not modified anymore.
+ * The primitive accessors {@link #getLong(int)} and
+ * {@link #forEachLong(LongConsumer)} don't box the values.
+ * {@link #thaw()} creates an editable FrankenList again.
+ */
+public final class CompactLongList extends AbstractList<Long> implements RandomAccess {
+
+    private final long[] values;
+    private final int sectionSizeLimit;
+
+    CompactLongList(long[] values, int sectionSizeLimit) {
+        this.values = values;
+        this.sectionSizeLimit = sectionSizeLimit;
+    }
+
+    @Override
+    public Long get(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param index The index.
+     * @return the value at the index.
+     */
+    public long getLong(int index) {
+        return values[index];
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @return a copy of the values.
+     */
+    public long[] toLongArray() {
+        return values.clone();
+    }
+
+    /**
+     * Iterates the values without boxing.
+     *
+     * @param action Receives the values.
+     */
+    public void forEachLong(LongConsumer action) {
+        for (long value : values) {
+            action.accept(value);
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<? super Long> action) {
+        for (long value : values) {
+            action.accept(value);
+        }
+    }
+
+    @Override
+    public Spliterator.OfLong spliterator() {
+        return Arrays.spliterator(values);
+    }
+
+    /**
+     * Creates an editable FrankenList with the content of this list and the
+     * section size limit of the original list.
+     *
+     * @return the new list.
+     */
+    public FrankenList<Long> thaw() {
+        final FrankenList<Long> result = new FrankenList<>(sectionSizeLimit);
+        for (long value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+}
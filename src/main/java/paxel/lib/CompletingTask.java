@@ -0,0 +1,274 @@
+package paxel.lib;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A CompletableFuture, that is also the Runnable completing it. A submitted
+ * task costs this single object, instead of a future, a completer, the
+ * FutureTask of {@link java.util.concurrent.ExecutorService#submit(Runnable)}
+ * and a thenApply stage for a fixed result.
+ * <p>
+ * Cancelling the future reaches the task: a task that did not start yet gives
+ * its permit back and drops its Callable at once, and is skipped when the
+ * executor takes it. {@code cancel(true)} interrupts a running task. The
+ * dependent stages cancel the task as well, when they are cancelled.
+ * <p>
+ * A task with a deadline holds its timeout, and cancels it when it is done.
+ *
+ * @param <T> the result type.
+ */
+final class CompletingTask<T> extends CompletableFuture<T> implements Runnable {
+
+    private static final int CALLABLE = 0;
+    private static final int RUNNABLE = 1;
+    private static final int EXECUTABLE = 2;
+
+    // the states of the task
+    private static final int NEW = 0;
+    private static final int RUNNING = 1;
+    private static final int INTERRUPTING = 2;
+    private static final int DONE = 3;
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(CompletingTask.class, "state", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int kind;
+
+    // a Callable, Runnable or UnstableExecutable, null after a cancel
+    private Object task;
+
+    // the result of a Runnable or UnstableExecutable
+    private final T result;
+
+    // the permit held by the task of a bounded service, or null
+    private Permits permits;
+
+    // the next task of the same key in a KeyedExecutor
+    volatile CompletingTask<?> next;
+
+    // the deadline or delay of the task, or null
+    private TimingWheel.Timeout<?> timeout;
+
+    private volatile int state;
+
+    // the thread running the task, written before the state is RUNNING
+    private Thread runner;
+
+    private CompletingTask(int kind, Object task, T result) {
+        this.kind = kind;
+        this.task = task;
+        this.result = result;
+    }
+
+    static <T> CompletingTask<T> of(Callable<T> task) {
+        return new CompletingTask<>(CALLABLE, task, null);
+    }
+
+    static <T> CompletingTask<T> of(Runnable task, T result) {
+        return new CompletingTask<>(RUNNABLE, task, result);
+    }
+
+    static <T> CompletingTask<T> of(UnstableExecutable task, T result) {
+        return new CompletingTask<>(EXECUTABLE, task, result);
+    }
+
+    /**
+     * Lets the task give its permit back, when it finished.
+     */
+    CompletingTask<T> holding(Permits permits) {
+        this.permits = permits;
+        return this;
+    }
+
+    /**
+     * Lets the task cancel its timeout, when it is done. Must be called
+     * before the task is handed to the executor.
+     */
+    CompletingTask<T> timed(TimingWheel.Timeout<?> timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Fails the task with a {@link TimeoutException} at its deadline. A task
+     * that did not start yet is skipped, a running task finishes, but its
+     * result is ignored.
+     */
+    void expire() {
+        final TimeoutException failure = new TimeoutException("The deadline of the task expired");
+        if (!abort(failure)) {
+            completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Runs the task and completes this future, unless it is done already,
+     * e.g. cancelled. The permit is given back before the future completes,
+     * so dependent stages don't hold it.
+     */
+    @Override
+    public void run() {
+        runner = Thread.currentThread();
+        if (!STATE.compareAndSet(this, NEW, RUNNING)) {
+            // cancelled before it started, the cancel gave the permit back
+            runner = null;
+            return;
+        }
+        if (isDone()) {
+            // completed from outside, maybe by a cancel that interrupts now
+            finish();
+            release();
+            cancelTimeout();
+            return;
+        }
+        T value = null;
+        Throwable failure = null;
+        try {
+            switch (kind) {
+                case CALLABLE -> value = call();
+                case RUNNABLE -> {
+                    ((Runnable) task).run();
+                    value = result;
+                }
+                default -> {
+                    ((UnstableExecutable) task).execute();
+                    value = result;
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+        }
+        finish();
+        release();
+        cancelTimeout();
+        if (failure == null) {
+            complete(value);
+        } else {
+            completeExceptionally(failure);
+        }
+    }
+
+    // the task of kind CALLABLE is a Callable<T>
+    @SuppressWarnings("unchecked")
+    private T call() throws Exception {
+        return ((Callable<T>) task).call();
+    }
+
+    /**
+     * Leaves the RUNNING state. If a cancel interrupts the thread, waits for
+     * it and clears the interrupt, so that it does not hit the next task of
+     * the thread.
+     */
+    private void finish() {
+        if (!STATE.compareAndSet(this, RUNNING, DONE)) {
+            while (state == INTERRUPTING) {
+                Thread.onSpinWait();
+            }
+            Thread.interrupted();
+        }
+        runner = null;
+    }
+
+    /**
+     * Cancels the future. A task that did not start yet will not start
+     * anymore, a running task is interrupted, if requested.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            if (STATE.compareAndSet(this, NEW, DONE)) {
+                // the executor only finds the empty shell
+                task = null;
+                release();
+                cancelTimeout();
+            } else if (mayInterruptIfRunning && STATE.compareAndSet(this, RUNNING, INTERRUPTING)) {
+                try {
+                    final Thread thread = runner;
+                    if (thread != null) {
+                        thread.interrupt();
+                    }
+                } finally {
+                    state = DONE;
+                }
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Fails a task, that did not start yet, e.g. because it was rejected.
+     *
+     * @return {@code false} if the task started or was cancelled already.
+     */
+    boolean abort(Throwable failure) {
+        if (!STATE.compareAndSet(this, NEW, DONE)) {
+            return false;
+        }
+        task = null;
+        release();
+        cancelTimeout();
+        completeExceptionally(failure);
+        return true;
+    }
+
+    private void release() {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    private void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Dependent stages cancel the task, when they are cancelled.
+     */
+    @Override
+    public <U> CompletableFuture<U> newIncompleteFuture() {
+        return new Dependent<>(this);
+    }
+
+    /**
+     * A stage depending on a task. Cancelling it cancels the stage it depends
+     * on, and so on up to the task.
+     *
+     * @param <U> the result type.
+     */
+    static final class Dependent<U> extends CompletableFuture<U> {
+
+        private final CompletableFuture<?> source;
+
+        private Dependent(CompletableFuture<?> source) {
+            this.source = source;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                source.cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public <V> CompletableFuture<V> newIncompleteFuture() {
+            return new Dependent<>(this);
+        }
+    }
+}
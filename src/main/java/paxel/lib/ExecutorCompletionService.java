@@ -1,30 +1,148 @@
 package paxel.lib;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
  * This is a simple CompletionService that combines {@link Callable}s and
  * {@link Runnable}s with CompletableFutures. After submitting, the resulting
  * future can be used to chain actions depending on the execution result.
+ * <p>
+ * A bounded service limits the number of tasks, that are submitted but not
+ * finished, to a number of permits. This keeps producers, that outrun the
+ * executor, from queueing unbounded work: they wait ({@link #submit(Callable)}),
+ * are rejected ({@link #trySubmit(Callable)}) or get a future, that completes
+ * when the task was submitted ({@link #submitAsync(Callable)}). A task gives
+ * its permit back when it finished, no matter if it succeeded or failed. Tasks
+ * dropped by {@link #shutdownNow()} keep their permits.
  */
 public class ExecutorCompletionService {
 
     private final ExecutorService ex;
 
+    // null for an unbounded service
+    private final Permits permits;
+
+    // the executor of batches and scopes, that takes a permit per Runnable
+    private final Executor bounded;
+
+    // the timer of deadlines and delays, created on first use
+    private volatile TimingWheel wheel;
+
     public ExecutorCompletionService(ExecutorService ex) {
         this.ex = ex;
+        this.permits = null;
+        this.bounded = ex;
+    }
+
+    /**
+     * Creates a bounded service. Each submitted task holds one of the permits
+     * until it finished. A batch holds one permit per chunk and a scope one
+     * permit per forked task.
+     *
+     * @param ex      The executor.
+     * @param permits The maximum number of submitted, unfinished tasks.
+     */
+    public ExecutorCompletionService(ExecutorService ex, int permits) {
+        this.ex = ex;
+        this.permits = new Permits(permits);
+        this.bounded = this.permits.bound(ex);
+    }
+
+    /**
+     * Creates a service, that runs each task in a new virtual thread. Blocking
+     * tasks park their virtual thread instead of occupying a platform thread,
+     * so many thousands of them can wait at the same time.
+     *
+     * @return the service.
+     */
+    public static ExecutorCompletionService virtualThreads() {
+        return new ExecutorCompletionService(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Opens a scope for a group of tasks, that run in the executor of this
+     * service and are joined and cancelled together.
+     *
+     * @return the scope. It must be closed.
+     * @see TaskScope
+     */
+    public TaskScope scope() {
+        return new TaskScope(bounded);
+    }
+
+    /**
+     * Creates an executor, that runs the tasks of the same key one after the
+     * other in submission order, and the tasks of different keys in parallel
+     * in the executor of this service. A key takes the executor for up to 64
+     * tasks at a time.
+     *
+     * @param <K> The key type.
+     * @return the keyed executor.
+     * @see KeyedExecutor
+     */
+    public <K> KeyedExecutor<K> keyed() {
+        return keyed(64);
+    }
+
+    /**
+     * Creates an executor, that runs the tasks of the same key one after the
+     * other in submission order.
+     *
+     * @param batchSize The maximum number of tasks of a key, that run before
+     *                  the key gives the thread to other keys.
+     * @param <K>       The key type.
+     * @return the keyed executor.
+     * @see KeyedExecutor
+     */
+    public <K> KeyedExecutor<K> keyed(int batchSize) {
+        return new KeyedExecutor<>(this, ex, batchSize);
+    }
+
+    /**
+     * Returns the number of submitted tasks, that hold a permit, because they
+     * are queued in the executor or running.
+     *
+     * @return the number of tasks in flight. Always 0 for an unbounded
+     * service.
+     */
+    public int inFlight() {
+        return permits == null ? 0 : permits.inFlight();
     }
 
+    /**
+     * Returns the number of submissions waiting for a permit.
+     *
+     * @return the number of waiting submissions. Always 0 for an unbounded
+     * service.
+     */
+    public int queued() {
+        return permits == null ? 0 : permits.queued();
+    }
+
+    /**
+     * Shuts the executor down. The timer of deadlines and delays ends, as
+     * soon as no timeout is pending anymore. Delayed tasks, that are due
+     * after the shutdown, fail with a {@link RejectedExecutionException}.
+     */
     public void shutdown() {
         ex.shutdown();
+        stopWheel();
     }
 
     public List<Runnable> shutdownNow() {
-        return ex.shutdownNow();
+        final List<Runnable> dropped = ex.shutdownNow();
+        stopWheel();
+        return dropped;
     }
 
     public boolean isShutdown() {
@@ -39,35 +157,330 @@ public class ExecutorCompletionService {
         return ex.awaitTermination(timeout, unit);
     }
 
+    /**
+     * Submits the task. A bounded service blocks until a permit is free, like
+     * all submit methods.
+     *
+     * @param task The task.
+     * @param <T>  The result type.
+     * @return the future of the task.
+     * @throws RejectedExecutionException if the executor rejects the task, or
+     *                                    the thread is interrupted while
+     *                                    waiting for a permit. The interrupt
+     *                                    flag stays set then.
+     */
     public <T> CompletableFuture<T> submit(Callable<T> task) {
-        CompletableFuture<T> completableFuture = new CompletableFuture<>();
-        ex.submit(new CallableCompleter<>(task, completableFuture));
-        return completableFuture;
+        return execute(CompletingTask.of(task));
     }
 
     public <T> CompletableFuture<T> submit(Runnable task, T result) {
-        CompletableFuture<Void> completableFuture = new CompletableFuture<>();
-        ex.submit(new RunnableCompleter(task, completableFuture));
-        // if successful, change the result
-        return completableFuture.thenApply(f -> result);
+        return execute(CompletingTask.of(task, result));
     }
 
     public CompletableFuture<Void> submit(Runnable task) {
-        CompletableFuture<Void> completableFuture = new CompletableFuture<>();
-        ex.submit(new RunnableCompleter(task, completableFuture));
-        return completableFuture;
+        return execute(CompletingTask.of(task, null));
     }
 
     public <T> CompletableFuture<T> submitExecutable(UnstableExecutable task, T result) {
-        CompletableFuture<Void> completableFuture = new CompletableFuture<>();
-        ex.submit(new UnstableExecutableCompleter(task, completableFuture));
-        // if successful, change the result
-        return completableFuture.thenApply(f -> result);
+        return execute(CompletingTask.of(task, result));
     }
 
     public CompletableFuture<Void> submitExecutable(UnstableExecutable task) {
-        CompletableFuture<Void> completableFuture = new CompletableFuture<>();
-        ex.submit(new UnstableExecutableCompleter(task, completableFuture));
-        return completableFuture;
+        return execute(CompletingTask.of(task, null));
+    }
+
+    /**
+     * Submits the task with a deadline. If the task did not start at the
+     * deadline, it is skipped. If it is still running, it finishes, but its
+     * result is ignored. The future fails with a
+     * {@link java.util.concurrent.TimeoutException} in both cases. The
+     * deadline is checked in ticks of 10 ms, by a single timer thread of the
+     * service.
+     *
+     * @param task     The task.
+     * @param deadline The time, when the result is not needed anymore.
+     * @param <T>      The result type.
+     * @return the future of the task.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task, Instant deadline) {
+        return submit(task, TimeUnit.NANOSECONDS.convert(Duration.between(Instant.now(), deadline)), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Submits the task with a deadline after the timeout. Unlike
+     * {@link CompletableFuture#orTimeout(long, TimeUnit)}, that schedules each
+     * timeout in the heap of a delay queue, the timeouts of the service are
+     * kept in a hashed timing wheel, that schedules and cancels them in
+     * constant time.
+     *
+     * @param task    The task.
+     * @param timeout The time until the deadline.
+     * @param unit    The unit of the timeout.
+     * @param <T>     The result type.
+     * @return the future of the task.
+     * @see #submit(Callable, Instant)
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task, long timeout, TimeUnit unit) {
+        final CompletingTask<T> completing = admit(CompletingTask.of(task));
+        schedule(completing, new Deadline(deadline(timeout, unit), completing));
+        return start(completing);
+    }
+
+    /**
+     * Submits the task after the delay. A bounded service takes the permit at
+     * once, so the delayed task is in flight. Cancelling the future before
+     * the delay ends gives the permit back and the task is never handed to
+     * the executor.
+     *
+     * @param task  The task.
+     * @param delay The delay.
+     * @param unit  The unit of the delay.
+     * @param <T>   The result type.
+     * @return the future of the task.
+     */
+    public <T> CompletableFuture<T> submitDelayed(Callable<T> task, long delay, TimeUnit unit) {
+        if (ex.isShutdown()) {
+            throw new RejectedExecutionException("The executor is shut down");
+        }
+        final CompletingTask<T> completing = admit(CompletingTask.of(task));
+        schedule(completing, new Delay(deadline(delay, unit), completing));
+        return completing;
+    }
+
+    private void schedule(CompletingTask<?> task, TimingWheel.Timeout<?> timeout) {
+        task.timed(timeout);
+        try {
+            wheel().schedule(timeout);
+        } catch (RejectedExecutionException e) {
+            task.abort(e);
+            throw e;
+        }
+    }
+
+    private static long deadline(long timeout, TimeUnit unit) {
+        // far enough in the future, but without an overflow
+        return System.nanoTime() + Math.min(unit.toNanos(timeout), Long.MAX_VALUE >> 2);
+    }
+
+    private TimingWheel wheel() {
+        TimingWheel current = wheel;
+        if (current == null) {
+            synchronized (this) {
+                current = wheel;
+                if (current == null) {
+                    current = new TimingWheel(10, TimeUnit.MILLISECONDS, 9, "ExecutorCompletionService-timer");
+                    wheel = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private void stopWheel() {
+        final TimingWheel current = wheel;
+        if (current != null) {
+            current.stop();
+        }
+    }
+
+    /**
+     * Submits the task, if a permit is free, without waiting.
+     *
+     * @param task The task.
+     * @param <T>  The result type.
+     * @return the future of the task, or the rejection, if all permits are
+     * taken or the executor rejected the task.
+     */
+    public <T> Result<CompletableFuture<T>, RejectedExecutionException> trySubmit(Callable<T> task) {
+        if (permits != null && !permits.tryAcquire()) {
+            return Result.err(new RejectedExecutionException("All " + permits.limit() + " permits are taken"));
+        }
+        try {
+            return Result.ok(start(CompletingTask.of(task)));
+        } catch (RejectedExecutionException e) {
+            return Result.err(e);
+        }
+    }
+
+    /**
+     * Submits the task as soon as a permit is free, without blocking the
+     * caller. Waiting submissions get their permits in order.
+     *
+     * @param task The task.
+     * @param <T>  The result type.
+     * @return a future, that completes with the future of the task, when the
+     * task was submitted. Cancelling it before withdraws the submission. If
+     * the executor rejects the task, the future of the task fails.
+     */
+    public <T> CompletableFuture<CompletableFuture<T>> submitAsync(Callable<T> task) {
+        final CompletingTask<T> completing = CompletingTask.of(task);
+        final CompletableFuture<CompletableFuture<T>> submitted = new CompletableFuture<>();
+        if (permits == null) {
+            startAsync(completing, submitted);
+            return submitted;
+        }
+        final CompletableFuture<Void> ticket = permits.acquireAsync();
+        if (!ticket.isDone()) {
+            submitted.whenComplete((result, failure) -> {
+                if (failure != null) {
+                    permits.withdraw(ticket);
+                }
+            });
+        }
+        ticket.thenRun(() -> startAsync(completing, submitted));
+        return submitted;
+    }
+
+    private <T> void startAsync(CompletingTask<T> task, CompletableFuture<CompletableFuture<T>> submitted) {
+        if (!submitted.complete(task)) {
+            // cancelled, while the permit was handed over
+            if (permits != null) {
+                permits.release();
+            }
+            return;
+        }
+        try {
+            start(task);
+        } catch (RejectedExecutionException e) {
+            // the task failed with the rejection
+        }
+    }
+
+    /**
+     * Hands the task to execute instead of submit, because the task is its
+     * own future already. A bounded service waits for a permit first.
+     */
+    private <T> CompletableFuture<T> execute(CompletingTask<T> task) {
+        acquire();
+        return start(task);
+    }
+
+    /**
+     * Lets a task of a {@link KeyedExecutor} wait for a permit and hold it.
+     */
+    <T> CompletingTask<T> admit(CompletingTask<T> task) {
+        acquire();
+        return permits == null ? task : task.holding(permits);
+    }
+
+    private void acquire() {
+        if (permits != null) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for a permit", e);
+            }
+        }
+    }
+
+    /**
+     * Executes a task, that holds a permit already in a bounded service.
+     */
+    private <T> CompletableFuture<T> start(CompletingTask<T> task) {
+        try {
+            ex.execute(permits == null ? task : task.holding(permits));
+        } catch (RuntimeException e) {
+            task.abort(e);
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * Submits all tasks and returns a single future for all of their results.
+     * The tasks are enqueued in chunks of about a quarter of the tasks per
+     * processor, each chunk calls its tasks one after the other. Use
+     * {@link #submitAll(Collection, int)} with a chunk size of 1 for blocking
+     * tasks, that should run in parallel.
+     *
+     * @param tasks The tasks.
+     * @param <T>   The result type.
+     * @return the future of the results in the order of the tasks. It fails
+     * with the first failure of a task, the tasks that were not called yet are
+     * skipped then. Cancelling it skips them as well.
+     */
+    public <T> CompletableFuture<List<T>> submitAll(Collection<? extends Callable<T>> tasks) {
+        return submitAll(tasks, defaultChunkSize(tasks.size()));
+    }
+
+    /**
+     * Submits all tasks in chunks of the given size and returns a single future
+     * for all of their results.
+     *
+     * @param tasks     The tasks.
+     * @param chunkSize The number of tasks per enqueued Runnable.
+     * @param <T>       The result type.
+     * @return the future of the results in the order of the tasks.
+     * @see #submitAll(Collection)
+     */
+    public <T> CompletableFuture<List<T>> submitAll(Collection<? extends Callable<T>> tasks, int chunkSize) {
+        return BatchCompleter.all(tasks, chunkSize, bounded);
+    }
+
+    /**
+     * Submits all tasks and returns a future for the result of the first task,
+     * that succeeds. The tasks that were not called yet are skipped then. The
+     * tasks are enqueued in chunks like in {@link #submitAll(Collection)}.
+     *
+     * @param tasks The tasks.
+     * @param <T>   The result type.
+     * @return the future of the first result. It fails with the failure of the
+     * last task, if all tasks fail.
+     */
+    public <T> CompletableFuture<T> submitAny(Collection<? extends Callable<T>> tasks) {
+        return submitAny(tasks, defaultChunkSize(tasks.size()));
+    }
+
+    /**
+     * Submits all tasks in chunks of the given size and returns a future for
+     * the result of the first task, that succeeds.
+     *
+     * @param tasks     The tasks.
+     * @param chunkSize The number of tasks per enqueued Runnable.
+     * @param <T>       The result type.
+     * @return the future of the first result.
+     * @see #submitAny(Collection)
+     */
+    public <T> CompletableFuture<T> submitAny(Collection<? extends Callable<T>> tasks, int chunkSize) {
+        return BatchCompleter.any(tasks, chunkSize, bounded);
+    }
+
+    private static int defaultChunkSize(int tasks) {
+        return Math.max(1, tasks / (4 * Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Fails the task at its deadline.
+     */
+    private static final class Deadline extends TimingWheel.Timeout<CompletingTask<?>> {
+
+        private Deadline(long deadline, CompletingTask<?> task) {
+            super(deadline, task);
+        }
+
+        @Override
+        void expire(CompletingTask<?> task) {
+            task.expire();
+        }
+    }
+
+    /**
+     * Hands the task to the executor after its delay.
+     */
+    private final class Delay extends TimingWheel.Timeout<CompletingTask<?>> {
+
+        private Delay(long deadline, CompletingTask<?> task) {
+            super(deadline, task);
+        }
+
+        @Override
+        void expire(CompletingTask<?> task) {
+            try {
+                start(task);
+            } catch (RejectedExecutionException e) {
+                // the task failed with the rejection
+            }
+        }
     }
 }
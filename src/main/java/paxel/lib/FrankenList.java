@@ -1,6 +1,10 @@
 package paxel.lib;
 
 import java.util.*;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 /**
  * The FrankenList combines an ArrayList and multiple LinkedLists to allow quick
@@ -10,20 +14,27 @@ import java.util.*;
  * FrankenList (read: not at the end) the new element is always added to a
  * LinkedList, which is very fast. In case this LinkedList reaches the
  * sectionSizeLimit, it is split in half and the lower half is inserted into the
- * ArrayList containing the sections. This is quite slow, but depending on the
- * size of the sections quite rare. Additionally, all sections behind the
- * LinkedList get their global start index incremented. Searching an element in
- * the FrankenList is searching the correct section in the ArrayList, which is
- * fast because random access and then navigating in the small LinkedList to the
- * correct position. This is quite slow.
+ * tree of sections. The sections are kept in groups, so this only moves the
+ * sections of one group. Additionally, all sections behind the LinkedList get
+ * their global start index incremented, which is done for the rest of the group
+ * and once per following group. Searching an element in the FrankenList is
+ * searching the correct section in the tree, which is fast because it is a
+ * binary search in random access lists, and then navigating in the small
+ * LinkedList to the correct position. This is quite slow.
  * <p>
  * Overall the search and insert times are faster than a pure ArrayList or
  * LinkedList when the size of the map is very big.
  */
 public class FrankenList<E> extends AbstractList<E> implements RandomAccess {
 
+    // the aggregate of a section, that needs to be rebuilt
+    private static final Object STALE = new Object();
+
     private final ArrayListSection<E> data;
 
+    // null as long as there are no subscribers
+    private ChangeFeed<E> feed;
+
     public FrankenList() {
         data = new ArrayListSection<>();
     }
@@ -38,14 +49,49 @@ public class FrankenList<E> extends AbstractList<E> implements RandomAccess {
         data = new ArrayListSection<>(sectionSizeLimit);
     }
 
+    /**
+     * Sets the maximum size of a section and how a section is split when an
+     * insert lets it overflow.
+     *
+     * @param sectionSizeLimit The section size limit.
+     * @param splitPolicy      The split policy.
+     * @see SplitPolicy
+     */
+    public FrankenList(int sectionSizeLimit, SplitPolicy splitPolicy) {
+        data = new ArrayListSection<>(sectionSizeLimit);
+        data.splitPolicy = Objects.requireNonNull(splitPolicy, "splitPolicy");
+    }
+
     @Override
     public E get(int index) {
         return data.get(index);
     }
 
+    /**
+     * Retrieves the elements at many indices at once. The indices are sorted
+     * and each touched section is walked once in ascending order, instead of
+     * searching the section and walking its linked list for every index.
+     *
+     * @param indices The indices, in any order. Duplicates are allowed.
+     * @param out     Receives the element of indices[i] at out[i].
+     * @throws IndexOutOfBoundsException if an index is out of range (index < 0 || index >= size()).
+     *                                   Nothing is written in that case.
+     * @throws IllegalArgumentException  if out is shorter than indices.
+     */
+    public void getAll(int[] indices, E[] out) {
+        if (out.length < indices.length) {
+            throw new IllegalArgumentException("The output has room for " + out.length + " elements, but " + indices.length + " are requested");
+        }
+        data.getAll(indices, out);
+    }
+
     @Override
     public void clear() {
+        final int size = data.size();
         data.clear();
+        if (feed != null && size > 0) {
+            feed.removed(0, size);
+        }
     }
 
     @Override
@@ -55,9 +101,14 @@ public class FrankenList<E> extends AbstractList<E> implements RandomAccess {
 
     @Override
     public E remove(int index) {
+        if (index < 0 || index >= data.size()) {
+            // nothing to remove
+            return null;
+        }
         final E remove = data.remove(index);
-        if (remove != null) {
-            modCount++;
+        modCount++;
+        if (feed != null) {
+            feed.removed(index, 1);
         }
         return remove;
     }
@@ -66,6 +117,9 @@ public class FrankenList<E> extends AbstractList<E> implements RandomAccess {
     public boolean add(E value) {
         data.add(value);
         modCount++;
+        if (feed != null) {
+            feed.inserted(data.size() - 1, value);
+        }
         return true;
     }
 
@@ -95,6 +149,9 @@ public class FrankenList<E> extends AbstractList<E> implements RandomAccess {
     public void add(int index, E value) {
         data.add(index, value);
         modCount++;
+        if (feed != null) {
+            feed.inserted(index, value);
+        }
     }
 
     /**
@@ -107,7 +164,11 @@ public class FrankenList<E> extends AbstractList<E> implements RandomAccess {
      */
     @Override
     public E set(int index, E value) {
-        return data.set(index, value);
+        final E old = data.set(index, value);
+        if (feed != null) {
+            feed.set(index, value);
+        }
+        return old;
     }
 
     /**
@@ -135,6 +196,12 @@ public class FrankenList<E> extends AbstractList<E> implements RandomAccess {
             throw new ConcurrentModificationException("modified while sorting: list is corrupted.");
         }
         modCount++;
+        if (feed != null) {
+            // the clear published the remove of the old order
+            @SuppressWarnings("unchecked")
+            final List<E> sorted = (List<E>) Arrays.asList(a);
+            feed.inserted(0, sorted);
+        }
     }
 
     /**
@@ -171,6 +238,9 @@ public class FrankenList<E> extends AbstractList<E> implements RandomAccess {
     public void addFirst(E value) {
         modCount++;
         data.add(0, value);
+        if (feed != null) {
+            feed.inserted(0, value);
+        }
     }
 
     /**
@@ -183,227 +253,2693 @@ public class FrankenList<E> extends AbstractList<E> implements RandomAccess {
 
     }
 
-    private class ArrayListSection<F> {
+    /**
+     * Enables an index that maps each element to the sections containing it.
+     * With the index {@link #contains(Object)}, {@link #indexOf(Object)},
+     * {@link #lastIndexOf(Object)} and {@link #remove(Object)} are a hash
+     * lookup and the scan of a single section, instead of a scan of the whole
+     * list. The index costs memory and slows down every modification, so it is
+     * disabled by default. The elements must not change their
+     * {@code hashCode} while they are in the list.
+     */
+    public void enableIndex() {
+        data.enableIndex();
+    }
 
-        private final int sectionSizeLimit;
+    /**
+     * Drops the element index.
+     *
+     * @see #enableIndex()
+     */
+    public void disableIndex() {
+        data.disableIndex();
+    }
 
-        private final ArrayList<LinkedListSection<F>> sections = new ArrayList<>();
+    /**
+     * @return true if the element index is enabled.
+     */
+    public boolean isIndexed() {
+        return data.index != null;
+    }
 
-        private int entryCount;
+    /**
+     * Enables the compression of cold sections. A section that was not
+     * modified during the last coldAfter element modifications is encoded as
+     * zigzag deltas in varint format, if it contains only {@link Long}s. This
+     * is very compact for sorted numbers. On access, a section is decoded and
+     * kept in an LRU cache of the given size. Decoded values are equal, but
+     * not the same instances as the original values.
+     *
+     * @param coldAfter The number of element modifications after which an
+     *                  unmodified section is cold.
+     * @param cacheSize The number of decoded sections that are kept.
+     */
+    public void enableCompression(int coldAfter, int cacheSize) {
+        data.enableCompression(coldAfter, cacheSize);
+    }
 
-        private ArrayListSection(int sectionSizeLimit) {
-            this.sectionSizeLimit = sectionSizeLimit;
+    /**
+     * Decodes all sections and stops compressing.
+     *
+     * @see #enableCompression(int, int)
+     */
+    public void disableCompression() {
+        data.disableCompression();
+    }
+
+    /**
+     * @return the statistics of the compression or null if compression is not
+     * enabled.
+     * @see #enableCompression(int, int)
+     */
+    public CompressionStatistics compressionStatistics() {
+        return data.cold == null ? null : data.cold.statistics();
+    }
+
+    /**
+     * Describes the state of the compressed sections.
+     *
+     * @param packedSections The number of sections that are encoded.
+     * @param packedElements The number of elements in encoded sections.
+     * @param packedBytes    The size of the encoded sections in bytes.
+     * @param cachedSections The number of decoded sections in the cache.
+     * @param hits           The number of accesses to cached sections.
+     * @param decodes        The number of decoded sections.
+     */
+    public record CompressionStatistics(int packedSections, long packedElements, long packedBytes,
+                                        int cachedSections, long hits, long decodes) {
+
+        /**
+         * @return the average number of bytes of an encoded element.
+         */
+        public double bytesPerPackedElement() {
+            return packedElements == 0 ? 0 : (double) packedBytes / packedElements;
         }
 
-        private ArrayListSection() {
-            this.sectionSizeLimit = 750;
+        /**
+         * @return the share of accesses to encoded sections that were served
+         * by the cache.
+         */
+        public double hitRate() {
+            return hits + decodes == 0 ? 0 : (double) hits / (hits + decodes);
         }
+    }
 
-        private F remove(int index) {
-            if (sections.isEmpty() || index < 0 || index > entryCount) {
-                return null;
-            }
+    /**
+     * Enables per-section summaries with a Bloom filter of 8 bits per
+     * element.
+     *
+     * @see #enableSummaries(int)
+     */
+    public void enableSummaries() {
+        enableSummaries(8);
+    }
 
-            int rootIndex = guessRootIndex(index);
-            return dec(sections.get(rootIndex).remove(index), rootIndex);
-        }
+    /**
+     * Enables per-section summaries. Each section keeps the min and max of
+     * its elements in natural order and a small Bloom filter of their hash
+     * codes. {@link #contains(Object)}, {@link #indexOf(Object)},
+     * {@link #lastIndexOf(Object)}, {@link #remove(Object)} and
+     * {@link #filterRange(Object, Object)} skip the sections whose summary
+     * rules the value out. For clustered data, e.g. timestamps, that skips
+     * most of the list.
+     * <p>
+     * Additions widen the summary of a section, removals leave it as it is,
+     * because a summary may only be too wide, never too narrow. Sections that
+     * were split or merged, or lost half of their elements, rebuild their
+     * summary on the next search. The min and max are only used if all
+     * elements of a section are mutually {@link Comparable} and their natural
+     * order is consistent with equals.
+     *
+     * @param bloomBitsPerElement The size of the Bloom filters in bits per
+     *                            element of a full section. 0 disables the
+     *                            Bloom filters.
+     */
+    public void enableSummaries(int bloomBitsPerElement) {
+        data.enableSummaries(bloomBitsPerElement);
+    }
 
-        private void add(int index, F element) {
-            if (index > entryCount) {
-                throw new IndexOutOfBoundsException("Index " + index + " is outside of " + entryCount);
-            }
-            if (index == entryCount) {
-                add(element);
-            } else {
+    /**
+     * Drops the per-section summaries.
+     *
+     * @see #enableSummaries(int)
+     */
+    public void disableSummaries() {
+        data.disableSummaries();
+    }
 
-                int rootIndex = guessRootIndex(index);
-                final LinkedListSection<F> section = sections.get(rootIndex);
-                section.add(index, element);
-                for (int i = rootIndex + 1; i < sections.size(); i++) {
-                    sections.get(i).inc();
-                }
-                if (section.values.size() > sectionSizeLimit) {
-                    section.split(sections, rootIndex);
-                }
-                entryCount++;
-            }
-        }
+    /**
+     * @return true if the per-section summaries are enabled.
+     */
+    public boolean isSummarized() {
+        return data.summaries != null;
+    }
 
-        private F set(int index, F element) {
-            if (index >= entryCount || index < 0) {
-                throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to" + entryCount + '[');
-            }
+    /**
+     * Collects all elements between min and max (both inclusive) in natural
+     * order, in the order of the list. Null elements never match. With
+     * {@link #enableSummaries(int)} only the sections are visited, whose
+     * range overlaps.
+     *
+     * @param min The smallest accepted value.
+     * @param max The biggest accepted value.
+     * @return a new list with the matching elements.
+     * @throws ClassCastException if an element is not comparable to min and max.
+     */
+    public FrankenList<E> filterRange(E min, E max) {
+        final FrankenList<E> result = new FrankenList<>(data.sectionSizeLimit);
+        data.filterRange(min, max, result);
+        return result;
+    }
+
+    /**
+     * Enables range aggregation with the monoid. Each section caches the
+     * aggregate of its elements, so {@link #aggregate(int, int)} combines the
+     * cached aggregates of the covered sections and scans only the two
+     * sections at the borders of the range. A modified section rebuilds its
+     * aggregate on the next aggregation that covers it. Enabling another
+     * monoid replaces the previous one.
+     *
+     * @param monoid The monoid.
+     * @param <A>    The type of the aggregate.
+     */
+    public <A> void enableAggregation(Monoid<? super E, A> monoid) {
+        data.enableAggregation(Objects.requireNonNull(monoid, "monoid"));
+    }
+
+    /**
+     * Drops the monoid and the cached aggregates.
+     *
+     * @see #enableAggregation(Monoid)
+     */
+    public void disableAggregation() {
+        data.disableAggregation();
+    }
+
+    /**
+     * @return true if range aggregation is enabled.
+     */
+    public boolean isAggregated() {
+        return data.aggregates != null;
+    }
 
-            int rootIndex = guessRootIndex(index);
-            final LinkedListSection<F> bucket = sections.get(rootIndex);
-            return bucket.set(index, element);
+    /**
+     * Aggregates the elements of the range with the monoid of
+     * {@link #enableAggregation(Monoid)}, in the order of the list.
+     *
+     * @param from The index of the first aggregated element.
+     * @param to   The index behind the last aggregated element.
+     * @param <A>  The type of the aggregate.
+     * @return the aggregate, or the identity of the monoid for an empty range.
+     * @throws IndexOutOfBoundsException if the range is out of the list.
+     * @throws IllegalStateException     if aggregation is not enabled.
+     */
+    public <A> A aggregate(int from, int to) {
+        if (data.aggregates == null) {
+            throw new IllegalStateException("Aggregation is not enabled");
         }
+        if (from < 0 || from > to || to > data.size()) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + to + " is outside of [0 to " + data.size() + ']');
+        }
+        @SuppressWarnings("unchecked")
+        final A result = (A) data.aggregate(from, to);
+        return result;
+    }
 
-        private F get(int index) {
-            if (sections.isEmpty() || index < 0 || index > entryCount) {
-                throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to" + entryCount + '[');
-            }
-            int rootIndex = guessRootIndex(index);
-            return sections.get(rootIndex).get(index);
+    @Override
+    public int indexOf(Object o) {
+        return data.indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return data.lastIndexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return data.indexOf(o) >= 0;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        final int index = data.indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        data.remove(index);
+        modCount++;
+        if (feed != null) {
+            feed.removed(index, 1);
         }
+        return true;
+    }
 
-        private void add(F value) {
-            if (sections.isEmpty()) {
-                final LinkedListSection<F> section = new LinkedListSection<>(0);
-                sections.add(section);
-                section.values.add(value);
-            } else {
-                LinkedListSection<F> last = sections.getLast();
-                if (last.values.size() < sectionSizeLimit) {
-                    last.values.add(value);
-                } else {
-                    LinkedListSection<F> bucket = new LinkedListSection<>(
-                            last.globalSectionStartIndex + sectionSizeLimit);
-                    bucket.values.add(value);
-                    sections.add(bucket);
-                }
-            }
-            entryCount++;
+    /**
+     * Applies many positional edits in a single pass over the touched
+     * sections. All indices refer to the list as it was <b>before</b> the
+     * batch: an insert at index i places the value in front of the element
+     * that was at i (or at the end, if i is the size), several inserts at the
+     * same index keep their batch order. Set and remove address the original
+     * elements. The global start indices of the sections are fixed once per
+     * batch, instead of once per edited element.
+     *
+     * @param edits The edits to apply.
+     * @throws IndexOutOfBoundsException if an index is outside the list. The
+     * list is not modified in that case.
+     * @throws IllegalArgumentException if an element is set or removed more
+     * than once. The list is not modified in that case.
+     */
+    public void applyBatch(Collection<Edit<E>> edits) {
+        if (edits.isEmpty()) {
+            return;
         }
+        data.applyBatch(edits);
+        modCount++;
+    }
 
-        private F dec(F removeResult, int currentIndex) {
-            if (removeResult != null) {
-                // we removed an element, so the indices behind the bucket need to be
-                // decremented
-                for (int j = currentIndex + 1; j < sections.size(); j++) {
-                    sections.get(j).dec();
-                }
-                if (sections.get(currentIndex).values.isEmpty()) {
-                    // this bucket is now empty. we need to remove it
-                    sections.remove(currentIndex);
-                }
-                entryCount--;
-            }
-            return removeResult;
+    /**
+     * Merges the given values into this sorted list. The values are sorted
+     * and then inserted behind their equal elements, so that the list stays
+     * sorted. Each touched section is walked only once and the global start
+     * indices are fixed once for the whole batch.
+     *
+     * @param values The values to insert.
+     * @param c      the {@code Comparator} this list is sorted by. A
+     *               {@code null} value indicates that the elements'
+     *               {@linkplain Comparable natural ordering} should be used.
+     */
+    public void mergeSorted(Collection<? extends E> values, Comparator<? super E> c) {
+        if (values.isEmpty()) {
+            return;
         }
+        final List<E> sorted = new ArrayList<>(values);
+        sorted.sort(c);
+        if (c != null) {
+            data.mergeSorted(sorted, c);
+        } else {
+            // the elements are Comparable, or the sort failed already
+            @SuppressWarnings("unchecked")
+            final Comparator<E> natural = (Comparator<E>) (Comparator<?>) Comparator.naturalOrder();
+            data.mergeSorted(sorted, natural);
+        }
+        modCount++;
+    }
 
-        private int guessRootIndex(int index) {
-            if (index == 0) {
-                return 0;
-            }
-            final int lastBucket = sections.size() - 1;
-            if (index > sections.get(lastBucket).globalSectionStartIndex) {
-                return lastBucket;
-            }
+    /**
+     * Cuts the list at the index. This list keeps the elements in front of
+     * the index, the returned list gets the rest. The sections are moved
+     * instead of copied, only the section containing the index is split, so
+     * this costs O(sections) instead of O(elements). Handles follow their
+     * elements into the returned list. With the element index enabled, the
+     * moved elements are re-indexed.
+     *
+     * @param index The index of the first element of the returned list.
+     * @return a new list with the elements behind the index.
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index > size())
+     */
+    public FrankenList<E> splitAt(int index) {
+        checkPosition(index);
+        final FrankenList<E> tail = new FrankenList<>(data.sectionSizeLimit);
+        final int count = data.size() - index;
+        if (count == 0) {
+            return tail;
+        }
+        data.splice(index, count, tail.data, null);
+        modCount++;
+        if (feed != null) {
+            feed.removed(index, count);
+        }
+        return tail;
+    }
 
-            int guessedIndex = index / sectionSizeLimit;
+    /**
+     * Moves all elements of the other list to the end of this list. The
+     * sections of the other list are adopted instead of copied, so this costs
+     * O(sections) of the other list. The other list is empty afterwards.
+     * Handles follow their elements into this list.
+     *
+     * @param other The list to append.
+     * @throws IllegalArgumentException if the other list is this list.
+     */
+    public void appendAll(FrankenList<E> other) {
+        splice(data.size(), 0, other);
+    }
 
-            if (guessedIndex > lastBucket) {
-                guessedIndex = lastBucket;
+    /**
+     * Removes count elements at the index and moves all elements of the other
+     * list to the index. The removed sections and the sections of the other
+     * list are moved instead of copied, only the sections at the borders of
+     * the removed range are split, so this costs O(sections). The other list
+     * is empty afterwards. Handles follow their elements.
+     *
+     * @param index The index of the first removed element.
+     * @param count The number of removed elements.
+     * @param other The list to insert. It is emptied.
+     * @return a new list with the removed elements.
+     * @throws IndexOutOfBoundsException if the range is out of the list.
+     * @throws IllegalArgumentException  if the other list is this list.
+     */
+    public FrankenList<E> splice(int index, int count, FrankenList<E> other) {
+        if (other == this) {
+            throw new IllegalArgumentException("A list can not be spliced into itself");
+        }
+        checkPosition(index);
+        if (count < 0 || index + count > data.size()) {
+            throw new IndexOutOfBoundsException("Range " + index + " to " + (index + count) + " is outside of [0 to " + data.size() + ']');
+        }
+        final FrankenList<E> removed = new FrankenList<>(data.sectionSizeLimit);
+        final int inserted = other.data.size();
+        if (count == 0 && inserted == 0) {
+            return removed;
+        }
+        // only needed for the subscribers
+        final List<E> values = feed != null && inserted > 0 ? new ArrayList<>(other) : null;
+        data.splice(index, count, removed.data, other.data);
+        modCount++;
+        if (inserted > 0) {
+            other.modCount++;
+            if (other.feed != null) {
+                other.feed.removed(0, inserted);
             }
-            if (guessedIndex < 0) {
-                guessedIndex = 0;
+        }
+        if (feed != null) {
+            if (count > 0) {
+                feed.removed(index, count);
             }
-            for (;;) {
-                LinkedListSection<F> test = sections.get(guessedIndex);
-                if (test.globalSectionStartIndex <= index) {
-                    if (guessedIndex == lastBucket) {
-                        // it's in/behind the last one
-                        return guessedIndex;
-                    }
-                    if (sections.get(guessedIndex + 1).globalSectionStartIndex > index) {
-                        // found
-                        return guessedIndex;
-                    }
-                    // it is maybe in the next one
-                    guessedIndex++;
-
-                } else {
-                    if (guessedIndex == 0) {
-                        // somethings broken
-                        return 0;
-                    }
-                    // it is maybe in the previous one
-                    guessedIndex--;
-                }
+            if (values != null) {
+                feed.inserted(index, values);
             }
         }
+        return removed;
+    }
 
-        int size() {
-            return entryCount;
-        }
-
-        private void clear() {
-            int expected = modCount;
-            sections.clear();
-            entryCount = 0;
-            if (modCount != expected) {
-                throw new ConcurrentModificationException("The map was modified while clearing");
-            }
-            modCount++;
+    private void checkPosition(int index) {
+        if (index < 0 || index > data.size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + data.size() + ']');
         }
+    }
 
-        private class LinkedListSection<G> {
-
-            private int globalSectionStartIndex;
-            private final LinkedList<G> values = new LinkedList<>();
+    /**
+     * Copies the content into an immutable list backed by a single array, with
+     * O(1) access and cheap iteration. Use it when the list is not modified
+     * anymore, and drop this list. {@link CompactList#thaw()} creates an
+     * editable FrankenList again.
+     *
+     * @return the compact copy.
+     */
+    public CompactList<E> freeze() {
+        return new CompactList<>(data.toArray(new Object[data.size()]), data.sectionSizeLimit);
+    }
 
-            public LinkedListSection(int index) {
-                this.globalSectionStartIndex = index;
+    /**
+     * Copies the content of a list of Longs into an immutable list backed by a
+     * single long array.
+     *
+     * @return the compact copy.
+     * @throws ClassCastException   if an element is not a Long.
+     * @throws NullPointerException if an element is null.
+     * @see #freeze()
+     */
+    public CompactLongList freezeLongs() {
+        final long[] values = new long[data.size()];
+        int i = 0;
+        for (ArrayListSection<E>.LinkedListSection section : data.sections) {
+            for (E value : section.values()) {
+                values[i++] = (Long) value;
             }
+        }
+        return new CompactLongList(values, data.sectionSizeLimit);
+    }
 
-            private G get(int globalIndex) {
-                final int localIndex = globalIndex - this.globalSectionStartIndex;
-                if (localIndex < 0 || localIndex > values.size()) {
-                    return null;
-                }
-                return values.get(localIndex);
-            }
+    /**
+     * @return the number of sections.
+     */
+    int sectionCount() {
+        return data.sections.size();
+    }
 
-            private void add(int globalIndex, G element) {
-                final int localIndex = globalIndex - this.globalSectionStartIndex;
-                if (localIndex >= 0 && localIndex <= values.size()) {
-                    values.add(localIndex, element);
-                }
+    /**
+     * @return the number of sections in the sparse form.
+     */
+    int sparseSectionCount() {
+        int count = 0;
+        for (ArrayListSection<E>.LinkedListSection section : data.sections) {
+            if (section.values != null && section.values.isSparse()) {
+                count++;
             }
+        }
+        return count;
+    }
 
-            private G set(int globalIndex, G element) {
-                final int localIndex = globalIndex - this.globalSectionStartIndex;
-                if (localIndex < 0 || localIndex > values.size()) {
-                    return null;
-                } else {
-                    return values.set(localIndex, element);
-                }
-            }
+    @Override
+    public Object[] toArray() {
+        return data.toArray(new Object[data.size()]);
+    }
 
-            private G remove(int globalIndex) {
-                final int localIndex = globalIndex - this.globalSectionStartIndex;
-                if (localIndex < 0 || localIndex >= values.size()) {
-                    return null;
-                }
-                return values.remove(localIndex);
-            }
+    /**
+     * Creates a handle to the element at the given index. The handle follows
+     * its element through all inserts, removes, splits and batches, and
+     * resolves its current index in O(1). It becomes invalid when its element
+     * is removed, the list is cleared or sorted. Handles cost a little time on
+     * each modification of their section, so {@link #release(Handle)} them
+     * when they are not needed anymore.
+     *
+     * @param index The index of the element.
+     * @return the handle.
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size())
+     */
+    public Handle handle(int index) {
+        return data.handle(index, new Handle(this));
+    }
 
-            private void inc() {
-                globalSectionStartIndex++;
-            }
+    /**
+     * Stops tracking the handle. It is invalid afterwards.
+     *
+     * @param handle The handle.
+     */
+    public void release(Handle handle) {
+        if (handle.owner == this && handle.section != null) {
+            data.section(handle).handles.remove(handle);
+            handle.section = null;
+        }
+    }
 
-            private void dec() {
-                globalSectionStartIndex--;
-            }
+    /**
+     * @param handle The handle.
+     * @return the element of the handle.
+     * @throws IllegalStateException if the handle is invalid.
+     */
+    public E get(Handle handle) {
+        check(handle);
+        return data.get(handle);
+    }
 
-            private void split(ArrayList<LinkedListSection<G>> rootList, int splitNodeIndex) {
-                final int nextIndex = sectionSizeLimit / 2;
-                LinkedListSection<G> nextNode = new LinkedListSection<>(this.globalSectionStartIndex + nextIndex);
-                // move the end of the list to a new bucket
-                List<G> subList = values.subList(nextIndex, values.size());
-                // add lower part to the new bucket
-                nextNode.values.addAll(subList);
-                // delete lower part in previous bucket
-                subList.clear();
+    /**
+     * Replaces the element of the handle. The handle stays at the position.
+     *
+     * @param handle The handle.
+     * @param value  The new value.
+     * @return the previous element.
+     * @throws IllegalStateException if the handle is invalid.
+     */
+    public E set(Handle handle, E value) {
+        check(handle);
+        final E old = data.set(handle, value);
+        if (feed != null) {
+            feed.set(handle.index(), value);
+        }
+        return old;
+    }
 
-                rootList.add(splitNodeIndex + 1, nextNode);
+    /**
+     * Inserts the value directly in front of the element of the handle.
+     *
+     * @param handle The handle.
+     * @param value  The new value.
+     * @throws IllegalStateException if the handle is invalid.
+     */
+    public void insertBefore(Handle handle, E value) {
+        check(handle);
+        data.add(handle, 0, value);
+        modCount++;
+        if (feed != null) {
+            // the handle moved behind the value
+            feed.inserted(handle.index() - 1, value);
+        }
+    }
+
+    /**
+     * Inserts the value directly behind the element of the handle.
+     *
+     * @param handle The handle.
+     * @param value  The new value.
+     * @throws IllegalStateException if the handle is invalid.
+     */
+    public void insertAfter(Handle handle, E value) {
+        check(handle);
+        data.add(handle, 1, value);
+        modCount++;
+        if (feed != null) {
+            feed.inserted(handle.index() + 1, value);
+        }
+    }
+
+    /**
+     * Removes the element of the handle. The handle is invalid afterwards.
+     *
+     * @param handle The handle.
+     * @return the removed element.
+     * @throws IllegalStateException if the handle is invalid.
+     */
+    public E remove(Handle handle) {
+        check(handle);
+        final int index = feed == null ? -1 : handle.index();
+        final E removed = data.remove(handle);
+        modCount++;
+        if (feed != null) {
+            feed.removed(index, 1);
+        }
+        return removed;
+    }
+
+    private void check(Handle handle) {
+        if (handle.owner != this) {
+            throw new IllegalArgumentException("The handle belongs to another list");
+        }
+        if (handle.section == null) {
+            throw new IllegalStateException("The element of the handle was removed");
+        }
+    }
+
+    /**
+     * A stable position in a FrankenList, that follows its element.
+     *
+     * @see #handle(int)
+     */
+    public static final class Handle {
+
+        // changes when the element is moved into another list
+        private FrankenList<?> owner;
+        // the section containing the element, null if the handle is invalid
+        private Object section;
+        // the index in the section
+        private int offset;
+
+        private Handle(FrankenList<?> owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * @return the current index of the element or -1 if the handle is
+         * invalid.
+         */
+        public int index() {
+            return section == null ? -1
+                    : ((FrankenList<?>.ArrayListSection<?>.LinkedListSection) section).start() + offset;
+        }
+
+        /**
+         * @return false if the element was removed or the handle released.
+         */
+        public boolean isValid() {
+            return section != null;
+        }
+    }
+
+    /**
+     * Subscribes to the modifications of this list. The modifications are
+     * coalesced into as few changes as possible, e.g. consecutive inserts
+     * become a single insert of several values. A sort counts as two
+     * modifications, the remove of the old and the insert of the new order,
+     * and a batch counts one modification per touched section. The changes
+     * are delivered in the modifying thread, as soon as the given number of
+     * modifications has been collected, or when {@link #publishChanges()} is
+     * called. Each change refers to the list after all previous changes were
+     * applied. The subscriber must not modify this list.
+     * <p>
+     * As long as there is no subscriber, no changes are recorded.
+     *
+     * @param window     The number of modifications that are coalesced
+     *                   before they are delivered. 1 delivers each
+     *                   modification immediately.
+     * @param subscriber Receives the changes.
+     */
+    public void subscribe(int window, Consumer<List<Change<E>>> subscriber) {
+        final ChangeFeed<E> next = feed == null ? new ChangeFeed<>() : feed;
+        next.subscribe(window, subscriber);
+        feed = next;
+    }
+
+    /**
+     * Removes the subscriber. Pending changes are delivered before.
+     *
+     * @param subscriber The subscriber.
+     * @return true if the subscriber was subscribed.
+     */
+    public boolean unsubscribe(Consumer<List<Change<E>>> subscriber) {
+        if (feed == null) {
+            return false;
+        }
+        final boolean result = feed.unsubscribe(subscriber);
+        if (feed.isEmpty()) {
+            feed = null;
+        }
+        return result;
+    }
+
+    /**
+     * Delivers all pending changes to the subscribers.
+     */
+    public void publishChanges() {
+        if (feed != null) {
+            feed.flush();
+        }
+    }
+
+    /**
+     * A modification of the list, as delivered to subscribers.
+     *
+     * @param type   What was done.
+     * @param index  The index of the first modified element.
+     * @param count  The number of modified elements.
+     * @param values The inserted or set values. Empty for removes.
+     * @param <E>    The element type.
+     * @see #subscribe(int, Consumer)
+     */
+    public record Change<E>(Type type, int index, int count, List<E> values) {
+
+        public enum Type {
+            INSERT, REMOVE, SET
+        }
+    }
+
+    /**
+     * A single positional edit of a batch.
+     *
+     * @param kind  What to do.
+     * @param index The index in the list before the batch is applied.
+     * @param value The value to insert or set. Ignored for removes.
+     * @param <E>   The element type.
+     * @see #applyBatch(Collection)
+     */
+    public record Edit<E>(Kind kind, int index, E value) {
+
+        /**
+         * Creates an edit that inserts the value in front of the element at
+         * the given index.
+         *
+         * @param index The index.
+         * @param value The new value.
+         * @return The edit.
+         */
+        public static <U> Edit<U> insert(int index, U value) {
+            return new Edit<>(Kind.INSERT, index, value);
+        }
+
+        /**
+         * Creates an edit that replaces the element at the given index.
+         *
+         * @param index The index.
+         * @param value The new value.
+         * @return The edit.
+         */
+        public static <U> Edit<U> set(int index, U value) {
+            return new Edit<>(Kind.SET, index, value);
+        }
+
+        /**
+         * Creates an edit that removes the element at the given index.
+         *
+         * @param index The index.
+         * @return The edit.
+         */
+        public static <U> Edit<U> remove(int index) {
+            return new Edit<>(Kind.REMOVE, index, null);
+        }
+
+        public enum Kind {
+            INSERT, SET, REMOVE
+        }
+    }
+
+    /**
+     * Decides where a section is cut, when an insert lets it grow beyond the
+     * section size limit. Batches and merges always cut oversized sections into
+     * evenly filled pieces.
+     */
+    @FunctionalInterface
+    public interface SplitPolicy {
+
+        /**
+         * Cuts in the middle. Good for random inserts, but ascending inserts
+         * leave a trail of half filled sections behind.
+         */
+        SplitPolicy MIDPOINT = (size, inserted) -> new int[]{size / 2};
+
+        /**
+         * Cuts in front of the inserted element, so the elements in front of it
+         * stay in the full section and ascending inserts continue in the new
+         * one. Good for sequential and append heavy inserts.
+         */
+        SplitPolicy AT_INSERT = (size, inserted) -> new int[]{Math.max(1, inserted)};
+
+        /**
+         * Cuts into three thirds. The sections are only a third full, which
+         * leaves room for many inserts into the same region before the next
+         * split. Good for clustered inserts, but costs more sections.
+         */
+        SplitPolicy THREE_WAY = (size, inserted) -> new int[]{size / 3, size * 2 / 3};
+
+        /**
+         * Calculates the cuts of an overflowing section.
+         *
+         * @param size     The size of the section, that is above the limit.
+         * @param inserted The index of the inserted element in the section.
+         * @return the ascending indices in the section, where new sections
+         * start. Each must be between 1 and size - 1.
+         */
+        int[] cuts(int size, int inserted);
+    }
+
+    /**
+     * Aggregates elements for {@link #aggregate(int, int)}. Combine must be
+     * associative and the identity must not change a combined value. It does
+     * not need to be commutative, the aggregates are combined in the order of
+     * the list.
+     *
+     * @param <T> the element type.
+     * @param <A> the type of the aggregate.
+     */
+    public interface Monoid<T, A> {
+
+        /**
+         * Creates a monoid from its parts.
+         *
+         * @param identity The aggregate of no elements.
+         * @param lift     The aggregate of a single element.
+         * @param combine  Combines two aggregates.
+         * @param <T>      the element type.
+         * @param <A>      the type of the aggregate.
+         * @return the monoid.
+         */
+        static <T, A> Monoid<T, A> of(A identity, Function<? super T, ? extends A> lift, BinaryOperator<A> combine) {
+            return new Monoid<>() {
+                @Override
+                public A identity() {
+                    return identity;
+                }
+
+                @Override
+                public A lift(T value) {
+                    return lift.apply(value);
+                }
+
+                @Override
+                public A combine(A left, A right) {
+                    return combine.apply(left, right);
+                }
+            };
+        }
+
+        /**
+         * Sums a long value of the elements.
+         *
+         * @param value The summed value of an element.
+         * @param <T>   the element type.
+         * @return the monoid.
+         */
+        static <T> Monoid<T, Long> summingLong(ToLongFunction<? super T> value) {
+            return of(0L, v -> value.applyAsLong(v), Long::sum);
+        }
+
+        /**
+         * Finds the biggest element. The identity is null.
+         *
+         * @param comparator The order of the elements.
+         * @param <T>        the element type.
+         * @return the monoid.
+         */
+        static <T> Monoid<T, T> maxBy(Comparator<? super T> comparator) {
+            return of(null, Function.identity(), (a, b) -> a == null ? b : b == null ? a : comparator.compare(a, b) >= 0 ? a : b);
+        }
+
+        /**
+         * @return the aggregate of no elements.
+         */
+        A identity();
+
+        /**
+         * @param value The element.
+         * @return the aggregate of the element.
+         */
+        A lift(T value);
+
+        /**
+         * @param left  The aggregate of the elements in front.
+         * @param right The aggregate of the elements behind.
+         * @return the aggregate of both.
+         */
+        A combine(A left, A right);
+    }
+
+    private class ArrayListSection<F> {
+
+        private final int sectionSizeLimit;
+
+        private final SectionTree sections = new SectionTree();
+
+        private int entryCount;
+
+        private ElementIndex index;
+
+        private ColdSections cold;
+
+        private Summaries summaries;
+
+        private Aggregates aggregates;
+
+        private SplitPolicy splitPolicy = SplitPolicy.MIDPOINT;
+
+        // the recycled nodes of all sections
+        private final RecyclingLinkedList.Pool nodes;
+
+        // emptied sections for reuse
+        private final ArrayDeque<LinkedListSection> freeSections = new ArrayDeque<>();
+
+        // sections that should switch between dense and sparse at the end of the modification
+        private final ArrayList<LinkedListSection> reshaping = new ArrayList<>();
+
+        private ArrayListSection(int sectionSizeLimit) {
+            this.sectionSizeLimit = sectionSizeLimit;
+            this.nodes = new RecyclingLinkedList.Pool(Math.max(1024, 2 * sectionSizeLimit));
+        }
+
+        private ArrayListSection() {
+            this(750);
+        }
+
+        private F remove(int index) {
+            if (index < 0 || index >= entryCount) {
+                return null;
+            }
+
+            int rootIndex = findRootIndex(index);
+            final LinkedListSection section = sections.get(rootIndex);
+            // may be a null element
+            final F removed = section.remove(index);
+            removed(section, removed);
+            dec(rootIndex);
+            modified();
+            return removed;
+        }
+
+        private void add(int index, F element) {
+            if (index > entryCount) {
+                throw new IndexOutOfBoundsException("Index " + index + " is outside of " + entryCount);
+            }
+            if (index == entryCount) {
+                add(element);
+            } else {
+
+                int rootIndex = findRootIndex(index);
+                final LinkedListSection section = sections.get(rootIndex);
+                section.add(index, element);
+                added(section, element);
+                sections.shift(rootIndex + 1, 1);
+                splitIfFull(section, rootIndex, index - section.start());
+                entryCount++;
+                modified();
+            }
+        }
+
+        private void splitIfFull(LinkedListSection section, int rootIndex, int localIndex) {
+            if (section.size() > sectionSizeLimit) {
+                final int[] cuts = splitPolicy.cuts(section.size(), localIndex);
+                section.split(sections, rootIndex, cuts);
+                for (int i = 1; i <= cuts.length; i++) {
+                    final LinkedListSection next = sections.get(rootIndex + i);
+                    for (F value : next.values()) {
+                        moved(section, next, value);
+                    }
+                }
+            }
+        }
+
+        /*
+         * The handle operations work on the section and offset of the handle.
+         * They don't search the section of a global index, only the sections
+         * behind the modified one are shifted, like for every modification.
+         */
+
+        // the handles of this list hold its sections
+        @SuppressWarnings("unchecked")
+        private LinkedListSection section(Handle handle) {
+            return (LinkedListSection) handle.section;
+        }
+
+        private F get(Handle handle) {
+            return section(handle).values().get(handle.offset);
+        }
+
+        private F set(Handle handle, F element) {
+            final LinkedListSection section = section(handle);
+            final F old = section.values().set(handle.offset, element);
+            removed(section, old);
+            added(section, element);
+            modified();
+            return old;
+        }
+
+        /**
+         * Inserts in front of the element of the handle, or behind it, if
+         * behind is 1.
+         */
+        private void add(Handle handle, int behind, F element) {
+            final LinkedListSection section = section(handle);
+            final int localIndex = handle.offset + behind;
+            section.addLocal(localIndex, element);
+            added(section, element);
+            final int rootIndex = sections.shiftBehind(section, 1);
+            splitIfFull(section, rootIndex, localIndex);
+            entryCount++;
+            modified();
+        }
+
+        private F remove(Handle handle) {
+            final LinkedListSection section = section(handle);
+            // may be a null element
+            final F removed = section.removeLocal(handle.offset);
+            removed(section, removed);
+            final int rootIndex = sections.shiftBehind(section, -1);
+            if (section.size() == 0) {
+                recycle(sections.remove(rootIndex));
+            }
+            entryCount--;
+            modified();
+            return removed;
+        }
+
+        private F set(int index, F element) {
+            if (index >= entryCount || index < 0) {
+                throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to" + entryCount + '[');
+            }
+
+            int rootIndex = findRootIndex(index);
+            final LinkedListSection bucket = sections.get(rootIndex);
+            final F old = bucket.set(index, element);
+            removed(bucket, old);
+            added(bucket, element);
+            modified();
+            return old;
+        }
+
+        private F get(int index) {
+            if (sections.isEmpty() || index < 0 || index > entryCount) {
+                throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to" + entryCount + '[');
+            }
+            int rootIndex = findRootIndex(index);
+            return sections.get(rootIndex).get(index);
+        }
+
+        private void add(F value) {
+            if (sections.isEmpty()) {
+                final LinkedListSection section = newSection(0);
+                sections.add(section);
+                section.values().add(value);
+                added(section, value);
+            } else {
+                LinkedListSection last = sections.getLast();
+                if (last.size() < sectionSizeLimit) {
+                    last.values().add(value);
+                    added(last, value);
+                } else {
+                    LinkedListSection bucket = newSection(
+                            last.start() + sectionSizeLimit);
+                    bucket.values().add(value);
+                    sections.add(bucket);
+                    added(bucket, value);
+                }
+            }
+            entryCount++;
+            modified();
+        }
+
+        private void getAll(int[] indices, Object[] out) {
+            // the index in the upper half, the position in the request in the lower half
+            final long[] order = new long[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                final int index = indices[i];
+                if (index < 0 || index >= entryCount) {
+                    throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + entryCount + '[');
+                }
+                order[i] = (long) index << 32 | i;
+            }
+            Arrays.sort(order);
+            int from = 0;
+            while (from < order.length) {
+                final LinkedListSection section = sections.get(findRootIndex((int) (order[from] >>> 32)));
+                final int start = section.start();
+                final int end = start + section.size();
+                int to = from + 1;
+                while (to < order.length && (int) (order[to] >>> 32) < end) {
+                    to++;
+                }
+                // the requests [from, to[ are in this section
+                final int first = (int) (order[from] >>> 32) - start;
+                final int last = (int) (order[to - 1] >>> 32) - start;
+                int local = -1;
+                F value = null;
+                if (section.size() - last < first) {
+                    // closer to the end: walk backwards
+                    final ListIterator<F> it = section.values().listIterator(last + 1);
+                    for (int i = to - 1; i >= from; i--) {
+                        final int wanted = (int) (order[i] >>> 32) - start;
+                        if (wanted != local) {
+                            while (it.nextIndex() > wanted) {
+                                value = it.previous();
+                            }
+                            local = wanted;
+                        }
+                        out[(int) order[i]] = value;
+                    }
+                } else {
+                    final ListIterator<F> it = section.values().listIterator(first);
+                    for (int i = from; i < to; i++) {
+                        final int wanted = (int) (order[i] >>> 32) - start;
+                        if (wanted != local) {
+                            while (it.nextIndex() <= wanted) {
+                                value = it.next();
+                            }
+                            local = wanted;
+                        }
+                        out[(int) order[i]] = value;
+                    }
+                }
+                from = to;
+            }
+        }
+
+        private void added(LinkedListSection section, F value) {
+            if (index != null) {
+                index.add(value, section);
+            }
+            if (cold != null) {
+                cold.touched(section);
+            }
+            if (summaries != null && section.summary != null) {
+                summaries.add(section.summary, value);
+            }
+            section.aggregate = STALE;
+            reshapeLater(section);
+        }
+
+        private void removed(LinkedListSection section, F value) {
+            if (index != null) {
+                index.remove(value, section);
+            }
+            if (cold != null) {
+                cold.touched(section);
+            }
+            if (summaries != null) {
+                summaries.removed(section);
+            }
+            section.aggregate = STALE;
+            reshapeLater(section);
+        }
+
+        private void moved(LinkedListSection from, LinkedListSection to, F value) {
+            if (index != null) {
+                index.remove(value, from);
+                index.add(value, to);
+            }
+            if (cold != null) {
+                cold.touched(from);
+                cold.touched(to);
+            }
+            // rebuilt on the next search
+            from.summary = null;
+            to.summary = null;
+            from.aggregate = STALE;
+            to.aggregate = STALE;
+            reshapeLater(from);
+            reshapeLater(to);
+        }
+
+        /**
+         * Remembers the section, if it should switch between the dense and the
+         * sparse form. That is done in {@link #modified()}, because it would
+         * break the iterators of the running modification.
+         */
+        private void reshapeLater(LinkedListSection section) {
+            if (!section.reshapePending && section.values != null && section.values.isReshapeDue()) {
+                section.reshapePending = true;
+                reshaping.add(section);
+            }
+        }
+
+        /**
+         * Called at the end of each modification, when no section is in use
+         * anymore.
+         */
+        private void modified() {
+            if (!reshaping.isEmpty()) {
+                for (LinkedListSection section : reshaping) {
+                    section.reshapePending = false;
+                    if (section.group != null && section.values != null) {
+                        section.values.reshape();
+                    }
+                }
+                reshaping.clear();
+            }
+            if (cold != null) {
+                cold.sweep();
+            }
+        }
+
+        private Handle handle(int index, Handle handle) {
+            if (index < 0 || index >= entryCount) {
+                throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + entryCount + '[');
+            }
+            final LinkedListSection section = sections.get(findRootIndex(index));
+            handle.offset = index - section.start();
+            section.addHandle(handle);
+            return handle;
+        }
+
+        private Object[] toArray(Object[] result) {
+            int i = 0;
+            for (LinkedListSection section : sections) {
+                for (F value : section.values()) {
+                    result[i++] = value;
+                }
+            }
+            return result;
+        }
+
+        private void enableIndex() {
+            if (index == null) {
+                index = new ElementIndex();
+                for (LinkedListSection section : sections) {
+                    for (F value : section.values()) {
+                        index.add(value, section);
+                    }
+                }
+            }
+        }
+
+        private void disableIndex() {
+            index = null;
+        }
+
+        private void enableCompression(int coldAfter, int cacheSize) {
+            disableCompression();
+            cold = new ColdSections(coldAfter, cacheSize);
+            // everything that exists already is considered cold
+            cold.coolAll();
+        }
+
+        private void disableCompression() {
+            if (cold != null) {
+                for (LinkedListSection section : sections) {
+                    if (section.values == null) {
+                        section.values = cold.decode(section);
+                    }
+                    section.packed = null;
+                }
+                cold = null;
+            }
+        }
+
+        private void enableSummaries(int bloomBitsPerElement) {
+            summaries = new Summaries(bloomBitsPerElement);
+            for (LinkedListSection section : sections) {
+                section.summary = null;
+            }
+        }
+
+        private void disableSummaries() {
+            summaries = null;
+            for (LinkedListSection section : sections) {
+                section.summary = null;
+            }
+        }
+
+        private void enableAggregation(Monoid<? super F, ?> monoid) {
+            // the monoid only sees the elements of the sections
+            @SuppressWarnings("unchecked")
+            final Monoid<Object, Object> elements = (Monoid<Object, Object>) monoid;
+            aggregates = new Aggregates(elements);
+            for (LinkedListSection section : sections) {
+                section.aggregate = STALE;
+            }
+        }
+
+        private void disableAggregation() {
+            aggregates = null;
+            for (LinkedListSection section : sections) {
+                section.aggregate = STALE;
+            }
+        }
+
+        private Object aggregate(int from, int to) {
+            final Monoid<Object, Object> monoid = aggregates.monoid;
+            Object result = monoid.identity();
+            if (from == to) {
+                return result;
+            }
+            for (int rootIndex = findRootIndex(from); ; rootIndex++) {
+                final LinkedListSection section = sections.get(rootIndex);
+                final int start = section.start();
+                final int end = start + section.size();
+                if (from <= start && to >= end) {
+                    result = monoid.combine(result, aggregates.aggregate(section));
+                } else {
+                    // only a part of the section is in the range
+                    final int last = Math.min(to, end) - start;
+                    final ListIterator<F> it = section.values().listIterator(Math.max(from, start) - start);
+                    while (it.nextIndex() < last) {
+                        result = monoid.combine(result, monoid.lift(it.next()));
+                    }
+                }
+                if (to <= end) {
+                    return result;
+                }
+            }
+        }
+
+        private void filterRange(F min, F max, FrankenList<F> result) {
+            // the bounds are compared to the elements like the summaries
+            @SuppressWarnings("unchecked")
+            final Comparable<Object> low = (Comparable<Object>) min;
+            @SuppressWarnings("unchecked")
+            final Comparable<Object> high = (Comparable<Object>) max;
+            for (LinkedListSection section : sections) {
+                if (summaries != null && !summaries.mayOverlap(section, low, high)) {
+                    continue;
+                }
+                for (F value : section.values()) {
+                    if (value != null && low.compareTo(value) <= 0 && high.compareTo(value) >= 0) {
+                        result.add(value);
+                    }
+                }
+            }
+        }
+
+        private int indexOf(Object o) {
+            if (index != null) {
+                final LinkedListSection section = index.first(o);
+                return section == null ? -1 : section.start() + section.values().indexOf(o);
+            }
+            for (LinkedListSection section : sections) {
+                if (summaries != null && !summaries.mayContain(section, o)) {
+                    continue;
+                }
+                final int local = section.values().indexOf(o);
+                if (local >= 0) {
+                    return section.start() + local;
+                }
+            }
+            return -1;
+        }
+
+        private int lastIndexOf(Object o) {
+            if (index != null) {
+                final LinkedListSection section = index.last(o);
+                return section == null ? -1 : section.start() + section.values().lastIndexOf(o);
+            }
+            for (int i = sections.size() - 1; i >= 0; i--) {
+                final LinkedListSection section = sections.get(i);
+                if (summaries != null && !summaries.mayContain(section, o)) {
+                    continue;
+                }
+                final int local = section.values().lastIndexOf(o);
+                if (local >= 0) {
+                    return section.start() + local;
+                }
+            }
+            return -1;
+        }
+
+        private void dec(int currentIndex) {
+            // we removed an element, so the indices behind the bucket need to be
+            // decremented
+            sections.shift(currentIndex + 1, -1);
+            if (sections.get(currentIndex).size() == 0) {
+                // this bucket is now empty. we need to remove it
+                recycle(sections.remove(currentIndex));
+            }
+            entryCount--;
+        }
+
+        private LinkedListSection newSection(int start) {
+            final LinkedListSection section = freeSections.pollLast();
+            if (section == null) {
+                return new LinkedListSection(start);
+            }
+            section.groupOffset = start;
+            return section;
+        }
+
+        /**
+         * Keeps an empty section, that is not in the tree anymore, for reuse.
+         */
+        private void recycle(LinkedListSection section) {
+            if (freeSections.size() < 16 && section.values != null && section.values.isEmpty()
+                    && section.packed == null && section.handles == null) {
+                section.group = null;
+                section.lastModified = 0;
+                section.summary = null;
+                section.aggregate = STALE;
+                freeSections.add(section);
+            }
+        }
+
+        private int findRootIndex(int index) {
+            return sections.isEmpty() ? 0 : sections.find(index);
+        }
+
+        int size() {
+            return entryCount;
+        }
+
+        /*
+         * The sections hold the elements of this list, F is E. These view
+         * them as elements for the change feed.
+         */
+
+        @SuppressWarnings("unchecked")
+        private E element(F value) {
+            return (E) value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<E> elements(List<F> values) {
+            return (List<E>) values;
+        }
+
+        private void applyBatch(Collection<Edit<F>> edits) {
+            final List<Edit<F>> sorted = new ArrayList<>(edits);
+            // stable: inserts keep their order and go in front of a set/remove of the same index
+            sorted.sort(Comparator.<Edit<F>>comparingInt(Edit::index)
+                    .thenComparing(e -> e.kind() != Edit.Kind.INSERT));
+            validate(sorted);
+
+            if (sections.isEmpty()) {
+                // only inserts at 0 are valid
+                final List<E> values = new ArrayList<>(sorted.size());
+                for (Edit<F> edit : sorted) {
+                    add(edit.value());
+                    values.add(element(edit.value()));
+                }
+                if (feed != null) {
+                    feed.inserted(0, values);
+                }
+                return;
+            }
+
+            // the changes of a section are published together
+            final ChangeFeed.Changes<E> changes = feed == null ? null : new ChangeFeed.Changes<>();
+            int delta = 0;
+            int next = 0;
+            int rootIndex = findRootIndex(sorted.get(0).index());
+            final int firstTouched = rootIndex;
+            while (next < sorted.size()) {
+                final int index = sorted.get(next).index();
+                if (rootIndex < sections.size() - 1 && sections.get(rootIndex + 1).start() <= index) {
+                    // the start indices are untouched until the end of the batch
+                    rootIndex = findRootIndex(index);
+                }
+                final LinkedListSection section = sections.get(rootIndex);
+                final int start = section.start();
+                final int end = rootIndex == sections.size() - 1
+                        ? entryCount + 1
+                        : sections.get(rootIndex + 1).start();
+                final ListIterator<F> it = section.values().listIterator();
+                int local = 0;
+                final int firstEdit = next;
+                while (next < sorted.size() && sorted.get(next).index() < end) {
+                    final Edit<F> edit = sorted.get(next++);
+                    for (; local < edit.index() - start; local++) {
+                        it.next();
+                    }
+                    switch (edit.kind()) {
+                        case INSERT -> {
+                            it.add(edit.value());
+                            added(section, edit.value());
+                            if (changes != null) {
+                                changes.inserted(edit.index() + delta, element(edit.value()));
+                            }
+                            delta++;
+                        }
+                        case SET -> {
+                            removed(section, it.next());
+                            it.set(edit.value());
+                            added(section, edit.value());
+                            if (changes != null) {
+                                changes.set(edit.index() + delta, element(edit.value()));
+                            }
+                            local++;
+                        }
+                        case REMOVE -> {
+                            removed(section, it.next());
+                            it.remove();
+                            if (changes != null) {
+                                changes.removed(edit.index() + delta, 1);
+                            }
+                            local++;
+                            delta--;
+                        }
+                    }
+                }
+                if (section.handles != null) {
+                    remapHandles(section, sorted.subList(firstEdit, next));
+                }
+                if (changes != null) {
+                    feed.publish(changes);
+                }
+                rootIndex++;
+            }
+            entryCount += delta;
+            restructure(firstTouched, rootIndex - 1);
+            modified();
+        }
+
+        /**
+         * Moves the handles of the section according to the applied edits,
+         * whose indices refer to the section before the edits.
+         */
+        private void remapHandles(LinkedListSection section, List<Edit<F>> edits) {
+            final int start = section.start();
+            for (Iterator<Handle> it = section.handles.iterator(); it.hasNext(); ) {
+                final Handle handle = it.next();
+                final int original = handle.offset;
+                for (Edit<F> edit : edits) {
+                    final int local = edit.index() - start;
+                    if (local > original) {
+                        break;
+                    }
+                    if (edit.kind() == Edit.Kind.INSERT) {
+                        handle.offset++;
+                    } else if (edit.kind() == Edit.Kind.REMOVE) {
+                        if (local == original) {
+                            handle.section = null;
+                            it.remove();
+                            break;
+                        }
+                        handle.offset--;
+                    }
+                }
+            }
+        }
+
+        private void validate(List<Edit<F>> sorted) {
+            Edit<F> previous = null;
+            for (Edit<F> edit : sorted) {
+                final int index = edit.index();
+                if (edit.kind() == Edit.Kind.INSERT) {
+                    if (index < 0 || index > entryCount) {
+                        throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + entryCount + ']');
+                    }
+                } else {
+                    if (index < 0 || index >= entryCount) {
+                        throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + entryCount + '[');
+                    }
+                    if (previous != null && previous.kind() != Edit.Kind.INSERT && previous.index() == index) {
+                        throw new IllegalArgumentException("Index " + index + " is changed twice in the batch");
+                    }
+                }
+                previous = edit;
+            }
+        }
+
+        private void mergeSorted(List<F> values, Comparator<? super F> c) {
+            if (sections.isEmpty()) {
+                for (F value : values) {
+                    add(value);
+                }
+                if (feed != null) {
+                    feed.inserted(0, elements(values));
+                }
+                return;
+            }
+            // the changes of a section are published together
+            final ChangeFeed.Changes<E> changes = feed == null ? null : new ChangeFeed.Changes<>();
+            int next = 0;
+            int rootIndex = findSortedSection(values.getFirst(), 0, c);
+            final int firstTouched = rootIndex;
+            while (next < values.size()) {
+                // the original start of the section is shifted by the values inserted in front of it
+                final int shift = next;
+                rootIndex = findSortedSection(values.get(next), rootIndex, c);
+                final LinkedListSection section = sections.get(rootIndex);
+                // values equal or bigger than the first element of the next section belong there
+                final F upper = rootIndex < sections.size() - 1 ? sections.get(rootIndex + 1).first() : null;
+                final boolean last = rootIndex == sections.size() - 1;
+                final ListIterator<F> it = section.values().listIterator();
+                while (next < values.size() && (last || c.compare(values.get(next), upper) < 0)) {
+                    final F value = values.get(next++);
+                    while (it.hasNext()) {
+                        if (c.compare(it.next(), value) > 0) {
+                            it.previous();
+                            break;
+                        }
+                    }
+                    if (changes != null) {
+                        changes.inserted(section.start() + shift + it.nextIndex(), element(value));
+                    }
+                    section.shiftHandles(it.nextIndex(), 1);
+                    it.add(value);
+                    added(section, value);
+                }
+                if (changes != null) {
+                    feed.publish(changes);
+                }
+            }
+            entryCount += values.size();
+            restructure(firstTouched, rootIndex);
+            modified();
+        }
+
+        /**
+         * Finds the last section at or behind from, that starts with an element
+         * smaller or equal to the value.
+         */
+        private int findSortedSection(F value, int from, Comparator<? super F> c) {
+            int low = from + 1;
+            int high = sections.size() - 1;
+            int found = from;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (c.compare(sections.get(mid).first(), value) <= 0) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Moves the count elements at the index into the empty target and the
+         * elements of the source (if any) to the index. Only the sections at
+         * the borders are split, all others are moved.
+         */
+        private void splice(int index, int count, ArrayListSection<F> target, ArrayListSection<F> source) {
+            final int from = cutAt(index);
+            final int to = cutAt(index + count);
+            target.adopt(this, from, to, 0);
+            target.restructure(0, target.sections.size() - 1);
+            int end = from;
+            if (source != null && !source.sections.isEmpty()) {
+                end += adopt(source, 0, source.sections.size(), from);
+                source.restructure(0, -1);
+            }
+            restructure(Math.max(0, from - 1), Math.min(end, sections.size() - 1));
+            target.modified();
+            if (source != null) {
+                source.modified();
+            }
+            modified();
+        }
+
+        /**
+         * Splits the section containing the index, so that a section starts
+         * at the index.
+         *
+         * @return the position of the section starting at the index, or the
+         * number of sections if the index is the size.
+         */
+        private int cutAt(int index) {
+            if (index == entryCount) {
+                return sections.size();
+            }
+            final int rootIndex = findRootIndex(index);
+            final LinkedListSection section = sections.get(rootIndex);
+            final int local = index - section.start();
+            if (local == 0) {
+                return rootIndex;
+            }
+            final LinkedListSection tail = newSection(index);
+            section.values().moveTo(local, tail.values());
+            for (F value : tail.values()) {
+                moved(section, tail, value);
+            }
+            section.moveHandles(local, Integer.MAX_VALUE, tail, 0);
+            sections.add(rootIndex + 1, tail);
+            return rootIndex + 1;
+        }
+
+        /**
+         * Takes over the values of the sections [from, to[ of the source and
+         * inserts them at the position. The start indices are not updated.
+         *
+         * @return the number of adopted sections.
+         */
+        private int adopt(ArrayListSection<F> source, int from, int to, int position) {
+            final List<LinkedListSection> moved = source.sections.subList(from, to);
+            final List<LinkedListSection> adopted = new ArrayList<>(moved.size());
+            int count = 0;
+            for (LinkedListSection section : moved) {
+                final LinkedListSection target = newSection(0);
+                target.values = source.release(section);
+                target.values.pool(nodes);
+                count += target.values.size();
+                if (section.handles != null) {
+                    for (Handle handle : section.handles) {
+                        handle.owner = FrankenList.this;
+                        target.addHandle(handle);
+                    }
+                    section.handles = null;
+                }
+                if (index != null) {
+                    for (F value : target.values) {
+                        index.add(value, target);
+                    }
+                }
+                if (cold != null) {
+                    cold.touched(target);
+                }
+                reshapeLater(target);
+                adopted.add(target);
+            }
+            moved.clear();
+            source.entryCount -= count;
+            sections.addAll(position, adopted);
+            entryCount += count;
+            return adopted.size();
+        }
+
+        /**
+         * Prepares a section to leave this list.
+         *
+         * @return the decoded values of the section.
+         */
+        private RecyclingLinkedList<F> release(LinkedListSection section) {
+            if (section.packed != null) {
+                if (section.values == null) {
+                    section.values = cold.decode(section);
+                }
+                section.packed = null;
+            }
+            if (cold != null) {
+                cold.forget(section);
+            }
+            if (index != null) {
+                for (F value : section.values) {
+                    index.remove(value, section);
+                }
+            }
+            return section.values;
+        }
+
+        /**
+         * Drops empty sections, merges small neighbours and splits oversized
+         * sections in the range from to to, and recalculates the global start
+         * indices of all sections behind from.
+         */
+        private void restructure(int from, int to) {
+            final List<LinkedListSection> touched = sections.subList(from, to + 1);
+            final List<LinkedListSection> rebuilt = new ArrayList<>(touched.size());
+            final List<LinkedListSection> dropped = new ArrayList<>();
+            LinkedListSection previous = from > 0 ? sections.get(from - 1) : null;
+            int start = previous == null ? 0 : previous.start() + previous.size();
+            for (LinkedListSection section : touched) {
+                final int size = section.size();
+                if (size == 0) {
+                    dropped.add(section);
+                    continue;
+                }
+                if (previous != null && previous.size() + size <= sectionSizeLimit / 2) {
+                    // both are small enough to live in one section
+                    for (F value : section.values()) {
+                        moved(section, previous, value);
+                    }
+                    section.moveHandles(0, Integer.MAX_VALUE, previous, previous.size());
+                    section.values().moveTo(0, previous.values());
+                    reshapeLater(previous);
+                    dropped.add(section);
+                    start += size;
+                    continue;
+                }
+                if (size > sectionSizeLimit) {
+                    // cut into evenly filled pieces
+                    final int pieces = (size + sectionSizeLimit - 1) / sectionSizeLimit;
+                    final ListIterator<F> it = section.values().listIterator(size / pieces + (size % pieces > 0 ? 1 : 0));
+                    section.start(start);
+                    rebuilt.add(section);
+                    start += size / pieces + (size % pieces > 0 ? 1 : 0);
+                    int pieceStart = size / pieces + (size % pieces > 0 ? 1 : 0);
+                    for (int piece = 1; piece < pieces; piece++) {
+                        final int pieceSize = size / pieces + (size % pieces > piece ? 1 : 0);
+                        final LinkedListSection next = newSection(start);
+                        section.moveHandles(pieceStart, pieceStart + pieceSize, next, 0);
+                        pieceStart += pieceSize;
+                        for (int i = 0; i < pieceSize; i++) {
+                            final F value = it.next();
+                            it.remove();
+                            next.values().add(value);
+                            moved(section, next, value);
+                        }
+                        rebuilt.add(next);
+                        start += pieceSize;
+                    }
+                    previous = rebuilt.getLast();
+                    continue;
+                }
+                section.start(start);
+                rebuilt.add(section);
+                start += size;
+                previous = section;
+            }
+            touched.clear();
+            dropped.forEach(this::recycle);
+            sections.addAll(from, rebuilt);
+            final int behind = from + rebuilt.size();
+            if (behind < sections.size()) {
+                // the sections behind are still consistent with each other
+                sections.shift(behind, start - sections.get(behind).start());
+            }
+        }
+
+        private void clear() {
+            int expected = modCount;
+            for (LinkedListSection section : sections) {
+                section.invalidateHandles();
+            }
+            sections.clear();
+            entryCount = 0;
+            if (index != null) {
+                index = new ElementIndex();
+            }
+            if (cold != null) {
+                cold = new ColdSections(cold.coldAfter, cold.cacheSize);
+            }
+            if (modCount != expected) {
+                throw new ConcurrentModificationException("The map was modified while clearing");
+            }
+            modCount++;
+        }
+
+        /**
+         * Maps the elements to the sections that contain them. The value is
+         * either the section of the only occurrence, or a Map that counts the
+         * occurrences per section.
+         */
+        private final class ElementIndex {
+
+            private final HashMap<Object, Object> owners = new HashMap<>();
+
+            private void add(Object value, LinkedListSection section) {
+                final Object owner = owners.putIfAbsent(value, section);
+                if (owner == null) {
+                    return;
+                }
+                final Map<LinkedListSection, Integer> counts;
+                if (owner instanceof Map<?, ?> map) {
+                    counts = asCounts(map);
+                } else {
+                    counts = new IdentityHashMap<>();
+                    counts.put(asSection(owner), 1);
+                    owners.put(value, counts);
+                }
+                counts.merge(section, 1, Integer::sum);
+            }
+
+            private void remove(Object value, LinkedListSection section) {
+                final Object owner = owners.get(value);
+                if (owner == section) {
+                    owners.remove(value);
+                } else if (owner instanceof Map<?, ?> map) {
+                    final Map<LinkedListSection, Integer> counts = asCounts(map);
+                    counts.computeIfPresent(section, (s, c) -> c == 1 ? null : c - 1);
+                    if (counts.size() == 1) {
+                        final Map.Entry<LinkedListSection, Integer> last = counts.entrySet().iterator().next();
+                        if (last.getValue() == 1) {
+                            // back to a single occurrence
+                            owners.put(value, last.getKey());
+                        }
+                    }
+                }
+            }
+
+            private LinkedListSection first(Object value) {
+                final Object owner = owners.get(value);
+                if (owner instanceof Map<?, ?> map) {
+                    LinkedListSection first = null;
+                    for (Object key : map.keySet()) {
+                        final LinkedListSection section = asSection(key);
+                        if (first == null || section.start() < first.start()) {
+                            first = section;
+                        }
+                    }
+                    return first;
+                }
+                return asSection(owner);
+            }
+
+            private LinkedListSection last(Object value) {
+                final Object owner = owners.get(value);
+                if (owner instanceof Map<?, ?> map) {
+                    LinkedListSection last = null;
+                    for (Object key : map.keySet()) {
+                        final LinkedListSection section = asSection(key);
+                        if (last == null || section.start() > last.start()) {
+                            last = section;
+                        }
+                    }
+                    return last;
+                }
+                return asSection(owner);
+            }
+
+            // the owners are the sections of this list or their counts
+            @SuppressWarnings("unchecked")
+            private LinkedListSection asSection(Object owner) {
+                return (LinkedListSection) owner;
+            }
+
+            @SuppressWarnings("unchecked")
+            private Map<LinkedListSection, Integer> asCounts(Object owner) {
+                return (Map<LinkedListSection, Integer>) owner;
+            }
+        }
+
+        /**
+         * Encodes sections of Longs, that were not modified for a while, as
+         * zigzag deltas in varint format and drops their LinkedList. On access
+         * the section is decoded again and kept in a small LRU cache. Evicted
+         * sections drop their LinkedList again, as long as they are not
+         * modified.
+         */
+        private final class ColdSections {
+
+            private final int coldAfter;
+            private final int cacheSize;
+            private final LinkedHashMap<LinkedListSection, Boolean> decoded;
+            // the unpacked sections of this list, the least recently modified first
+            private final LinkedHashMap<LinkedListSection, Boolean> warm = new LinkedHashMap<>(16, 0.75f, true);
+            // counts the modified elements
+            private long clock;
+            private long nextSweep;
+            private long hits;
+            private long decodes;
+
+            private ColdSections(int coldAfter, int cacheSize) {
+                if (coldAfter < 1 || cacheSize < 1) {
+                    throw new IllegalArgumentException("coldAfter and cacheSize must be positive, but were " + coldAfter + " and " + cacheSize);
+                }
+                this.coldAfter = coldAfter;
+                this.cacheSize = cacheSize;
+                this.decoded = new LinkedHashMap<>(cacheSize * 2, 0.75f, true);
+                // existing sections have lastModified 0 and are cold right away
+                this.clock = coldAfter;
+                this.nextSweep = coldAfter;
+            }
+
+            private void touched(LinkedListSection section) {
+                section.lastModified = ++clock;
+                warm.put(section, Boolean.TRUE);
+                if (section.packed != null) {
+                    if (section.values == null) {
+                        section.values = decode(section);
+                    }
+                    // the encoded values are outdated
+                    section.packed = null;
+                    decoded.remove(section);
+                }
+            }
+
+            private void hit(LinkedListSection section) {
+                hits++;
+                decoded.get(section);
+            }
+
+            private void sweep() {
+                if (clock < nextSweep) {
+                    return;
+                }
+                nextSweep = clock + Math.max(1, coldAfter / 2);
+                // only the cold end of the warm sections is visited, not the whole tree
+                final List<LinkedListSection> cooled = new ArrayList<>();
+                for (Iterator<LinkedListSection> it = warm.keySet().iterator(); it.hasNext(); ) {
+                    final LinkedListSection section = it.next();
+                    if (clock - section.lastModified < coldAfter) {
+                        break;
+                    }
+                    it.remove();
+                    cooled.add(section);
+                }
+                for (LinkedListSection section : cooled) {
+                    // a dropped section is not in the tree anymore
+                    if (section.group != null && section.packed == null) {
+                        encode(section);
+                    }
+                }
+            }
+
+            /**
+             * Lets all sections of the list become cold right away.
+             */
+            private void coolAll() {
+                for (LinkedListSection section : sections) {
+                    section.lastModified = 0;
+                    warm.put(section, Boolean.TRUE);
+                }
+                sweep();
+            }
+
+            /**
+             * Forgets a section, that leaves the list.
+             */
+            private void forget(LinkedListSection section) {
+                warm.remove(section);
+                decoded.remove(section);
+            }
+
+            private RecyclingLinkedList<F> load(LinkedListSection section) {
+                final RecyclingLinkedList<F> values = decode(section);
+                decoded.put(section, Boolean.TRUE);
+                if (decoded.size() > cacheSize) {
+                    final Iterator<LinkedListSection> eldest = decoded.keySet().iterator();
+                    final LinkedListSection evicted = eldest.next();
+                    eldest.remove();
+                    evicted.values = null;
+                }
+                return values;
+            }
+
+            private RecyclingLinkedList<F> decode(LinkedListSection section) {
+                decodes++;
+                final RecyclingLinkedList<F> values = new RecyclingLinkedList<>(nodes);
+                final byte[] packed = section.packed;
+                long previous = 0;
+                int pos = 0;
+                for (int i = 0; i < section.packedSize; i++) {
+                    long raw = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = packed[pos++];
+                        raw |= (long) (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    previous += (raw >>> 1) ^ -(raw & 1);
+                    values.add(unpacked(previous));
+                }
+                return values;
+            }
+
+            private static <T> T decodeFirst(byte[] packed) {
+                long raw = 0;
+                int shift = 0;
+                int pos = 0;
+                byte b;
+                do {
+                    b = packed[pos++];
+                    raw |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                return unpacked((raw >>> 1) ^ -(raw & 1));
+            }
+
+            // only sections of Longs are packed
+            @SuppressWarnings("unchecked")
+            private static <T> T unpacked(long value) {
+                return (T) Long.valueOf(value);
+            }
+
+            private void encode(LinkedListSection section) {
+                final RecyclingLinkedList<F> values = section.values;
+                // worst case is 10 bytes per value
+                final byte[] buffer = new byte[values.size() * 10];
+                int pos = 0;
+                long previous = 0;
+                for (F value : values) {
+                    if (!(value instanceof Long l)) {
+                        // only Longs can be packed, try again later
+                        section.lastModified = clock;
+                        warm.put(section, Boolean.TRUE);
+                        return;
+                    }
+                    final long delta = l - previous;
+                    long zigzag = (delta << 1) ^ (delta >> 63);
+                    while ((zigzag & ~0x7FL) != 0) {
+                        buffer[pos++] = (byte) ((zigzag & 0x7F) | 0x80);
+                        zigzag >>>= 7;
+                    }
+                    buffer[pos++] = (byte) zigzag;
+                    previous = l;
+                }
+                section.packed = Arrays.copyOf(buffer, pos);
+                section.packedSize = values.size();
+                section.values = null;
+            }
+
+            private CompressionStatistics statistics() {
+                int packedSections = 0;
+                long packedBytes = 0;
+                long packedElements = 0;
+                for (LinkedListSection section : sections) {
+                    if (section.packed != null) {
+                        packedSections++;
+                        packedBytes += section.packed.length;
+                        packedElements += section.packedSize;
+                    }
+                }
+                return new CompressionStatistics(packedSections, packedElements, packedBytes, decoded.size(), hits, decodes);
+            }
+        }
+
+        /**
+         * Builds and checks the summaries of the sections: min and max in
+         * natural order and a Bloom filter of the hash codes. A summary may
+         * claim more than the section contains, but never less.
+         */
+        private final class Summaries {
+
+            private final int bloomBits;
+            private final int hashes;
+
+            private Summaries(int bloomBitsPerElement) {
+                if (bloomBitsPerElement < 0) {
+                    throw new IllegalArgumentException("The bloom bits per element must not be negative, but were " + bloomBitsPerElement);
+                }
+                // rounded up to whole longs
+                this.bloomBits = (sectionSizeLimit * bloomBitsPerElement + 63) / 64 * 64;
+                // the optimal number of hash functions is bits per element * ln 2
+                this.hashes = Math.max(1, (int) Math.round(bloomBitsPerElement * 0.693));
+            }
+
+            private Summary summary(LinkedListSection section) {
+                if (section.summary == null) {
+                    final Summary summary = new Summary(bloomBits);
+                    for (F value : section.values()) {
+                        add(summary, value);
+                    }
+                    section.summary = summary;
+                }
+                return section.summary;
+            }
+
+            private void add(Summary summary, Object value) {
+                if (value == null) {
+                    summary.hasNull = true;
+                    return;
+                }
+                if (bloomBits > 0) {
+                    final long hash = value.hashCode() * 0x9E3779B97F4A7C15L;
+                    for (int i = 0; i < hashes; i++) {
+                        final int bit = bit(hash, i);
+                        summary.bloom[bit >>> 6] |= 1L << bit;
+                    }
+                }
+                if (!summary.ordered) {
+                    return;
+                }
+                if (!(value instanceof Comparable)) {
+                    summary.unordered();
+                    return;
+                }
+                @SuppressWarnings("unchecked")
+                final Comparable<Object> comparable = (Comparable<Object>) value;
+                try {
+                    if (summary.min == null) {
+                        summary.min = comparable;
+                        summary.max = comparable;
+                    } else if (comparable.compareTo(summary.min) < 0) {
+                        summary.min = comparable;
+                    } else if (comparable.compareTo(summary.max) > 0) {
+                        summary.max = comparable;
+                    }
+                } catch (ClassCastException e) {
+                    summary.unordered();
+                }
+            }
+
+            private void removed(LinkedListSection section) {
+                final Summary summary = section.summary;
+                if (summary != null && ++summary.removals * 2 > section.size()) {
+                    // too wide to be useful
+                    section.summary = null;
+                }
+            }
+
+            private boolean mayContain(LinkedListSection section, Object o) {
+                final Summary summary = summary(section);
+                if (o == null) {
+                    return summary.hasNull;
+                }
+                if (bloomBits > 0) {
+                    final long hash = o.hashCode() * 0x9E3779B97F4A7C15L;
+                    for (int i = 0; i < hashes; i++) {
+                        final int bit = bit(hash, i);
+                        if ((summary.bloom[bit >>> 6] & 1L << bit) == 0) {
+                            return false;
+                        }
+                    }
+                }
+                if (summary.ordered && o instanceof Comparable) {
+                    if (summary.min == null) {
+                        // only nulls
+                        return false;
+                    }
+                    try {
+                        return summary.min.compareTo(o) <= 0 && summary.max.compareTo(o) >= 0;
+                    } catch (ClassCastException e) {
+                        return true;
+                    }
+                }
+                return true;
+            }
+
+            private boolean mayOverlap(LinkedListSection section, Comparable<Object> min, Comparable<Object> max) {
+                final Summary summary = summary(section);
+                if (!summary.ordered) {
+                    return true;
+                }
+                if (summary.min == null) {
+                    // only nulls
+                    return false;
+                }
+                return min.compareTo(summary.max) <= 0 && max.compareTo(summary.min) >= 0;
+            }
+
+            /**
+             * Double hashing with the two halves of the mixed hash code.
+             */
+            private int bit(long hash, int i) {
+                final int h1 = (int) (hash >>> 32);
+                final int h2 = (int) hash | 1;
+                return Math.floorMod(h1 + i * h2, bloomBits);
+            }
+        }
+
+        /**
+         * Builds the cached aggregates of the sections.
+         */
+        private final class Aggregates {
+
+            private final Monoid<Object, Object> monoid;
+
+            private Aggregates(Monoid<Object, Object> monoid) {
+                this.monoid = monoid;
+            }
+
+            private Object aggregate(LinkedListSection section) {
+                if (section.aggregate == STALE) {
+                    Object aggregate = monoid.identity();
+                    for (F value : section.values()) {
+                        aggregate = monoid.combine(aggregate, monoid.lift(value));
+                    }
+                    section.aggregate = aggregate;
+                }
+                return section.aggregate;
+            }
+        }
+
+        private final class Summary {
+
+            private final long[] bloom;
+            private Comparable<Object> min;
+            private Comparable<Object> max;
+            // false if an element is not comparable to the others
+            private boolean ordered = true;
+            private boolean hasNull;
+            // the number of removed elements since the summary was built
+            private int removals;
+
+            private Summary(int bloomBits) {
+                this.bloom = new long[bloomBits / 64];
+            }
+
+            private void unordered() {
+                ordered = false;
+                min = null;
+                max = null;
+            }
+        }
+
+        /**
+         * The root of the sections. Instead of a flat ArrayList, the sections
+         * are kept in groups of up to {@value #GROUP_LIMIT} sections. The start
+         * index of a section is relative to its group, so inserting or removing
+         * a section shifts a single group and the group list, and moving the
+         * start indices behind a modification touches the sections of one group
+         * and the starts of the following groups, instead of every section. The
+         * section of an index is found by a binary search over the groups and
+         * one over the sections of the group.
+         */
+        private final class SectionTree extends AbstractList<LinkedListSection> {
+
+            private static final int GROUP_LIMIT = 1024;
+
+            private final ArrayList<SectionGroup> groups = new ArrayList<>();
+
+            private int size;
+
+            @Override
+            public LinkedListSection get(int position) {
+                final SectionGroup group = groups.get(groupOf(position));
+                return group.members.get(position - group.position);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void add(int position, LinkedListSection section) {
+                addAll(position, Collections.singletonList(section));
+            }
+
+            @Override
+            public boolean addAll(int position, Collection<? extends LinkedListSection> added) {
+                if (added.isEmpty()) {
+                    return false;
+                }
+                final int g;
+                if (groups.isEmpty()) {
+                    groups.add(new SectionGroup(0));
+                    g = 0;
+                } else {
+                    g = position == size ? groups.size() - 1 : groupOf(position);
+                }
+                final SectionGroup group = groups.get(g);
+                for (LinkedListSection section : added) {
+                    final int start = section.start();
+                    section.group = group;
+                    section.start(start);
+                }
+                group.members.addAll(position - group.position, added);
+                size += added.size();
+                if (group.members.size() > GROUP_LIMIT) {
+                    // cut into evenly filled groups of about half the limit, with the same base
+                    final List<LinkedListSection> members = group.members;
+                    final int count = members.size() / (GROUP_LIMIT / 2);
+                    final int firstSize = members.size() / count + (members.size() % count > 0 ? 1 : 0);
+                    final List<SectionGroup> pieces = new ArrayList<>(count - 1);
+                    int from = firstSize;
+                    for (int piece = 1; piece < count; piece++) {
+                        final int pieceSize = members.size() / count + (members.size() % count > piece ? 1 : 0);
+                        final SectionGroup next = new SectionGroup(group.start);
+                        next.members.addAll(members.subList(from, from + pieceSize));
+                        for (LinkedListSection section : next.members) {
+                            section.group = next;
+                        }
+                        pieces.add(next);
+                        from += pieceSize;
+                    }
+                    members.subList(firstSize, members.size()).clear();
+                    groups.addAll(g + 1, pieces);
+                }
+                renumber(g);
+                return true;
+            }
+
+            @Override
+            public LinkedListSection remove(int position) {
+                final int g = groupOf(position);
+                final SectionGroup group = groups.get(g);
+                final LinkedListSection removed = group.members.remove(position - group.position);
+                detach(removed);
+                size--;
+                renumber(merge(g));
+                return removed;
+            }
+
+            @Override
+            protected void removeRange(int from, int to) {
+                if (from >= to) {
+                    return;
+                }
+                final int first = groupOf(from);
+                int g = first;
+                int local = from - groups.get(g).position;
+                int remaining = to - from;
+                while (remaining > 0) {
+                    final SectionGroup group = groups.get(g);
+                    final List<LinkedListSection> removed = group.members.subList(local, Math.min(group.members.size(), local + remaining));
+                    for (LinkedListSection section : removed) {
+                        detach(section);
+                    }
+                    remaining -= removed.size();
+                    size -= removed.size();
+                    removed.clear();
+                    if (group.members.isEmpty()) {
+                        groups.remove(g);
+                    } else {
+                        g++;
+                    }
+                    local = 0;
+                }
+                renumber(first < groups.size() ? merge(first) : Math.max(0, first - 1));
+            }
+
+            @Override
+            public void clear() {
+                groups.clear();
+                size = 0;
+            }
+
+            @Override
+            public Iterator<LinkedListSection> iterator() {
+                return new Iterator<>() {
+                    private int g;
+                    private int local;
+
+                    @Override
+                    public boolean hasNext() {
+                        return g < groups.size() && local < groups.get(g).members.size();
+                    }
+
+                    @Override
+                    public LinkedListSection next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        final List<LinkedListSection> members = groups.get(g).members;
+                        final LinkedListSection next = members.get(local++);
+                        if (local == members.size()) {
+                            g++;
+                            local = 0;
+                        }
+                        return next;
+                    }
+                };
+            }
+
+            /**
+             * Adds delta to the start index of the sections at and behind the
+             * position.
+             */
+            private void shift(int position, int delta) {
+                if (position >= size || delta == 0) {
+                    return;
+                }
+                final int g = groupOf(position);
+                final SectionGroup group = groups.get(g);
+                final int local = position - group.position;
+                if (local == 0) {
+                    group.start += delta;
+                } else {
+                    for (int i = local; i < group.members.size(); i++) {
+                        group.members.get(i).groupOffset += delta;
+                    }
+                }
+                for (int i = g + 1; i < groups.size(); i++) {
+                    groups.get(i).start += delta;
+                }
+            }
+
+            /**
+             * Adds delta to the start index of the sections behind the given
+             * one. Walks from the end to the section, so it costs the same as
+             * {@link #shift(int, int)}, without searching the position.
+             *
+             * @return the position of the section.
+             */
+            private int shiftBehind(LinkedListSection section, int delta) {
+                final SectionGroup group = section.group;
+                int g = groups.size() - 1;
+                for (; groups.get(g) != group; g--) {
+                    groups.get(g).start += delta;
+                }
+                final List<LinkedListSection> members = group.members;
+                int local = members.size() - 1;
+                for (; members.get(local) != section; local--) {
+                    members.get(local).groupOffset += delta;
+                }
+                return group.position + local;
+            }
+
+            /**
+             * @return the position of the last section starting at or in front
+             * of the index.
+             */
+            private int find(int index) {
+                int low = 0;
+                int high = groups.size() - 1;
+                while (low < high) {
+                    final int mid = (low + high + 1) >>> 1;
+                    final SectionGroup group = groups.get(mid);
+                    if (group.start + group.members.getFirst().groupOffset <= index) {
+                        low = mid;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+                final SectionGroup group = groups.get(low);
+                final int local = index - group.start;
+                int first = 0;
+                int last = group.members.size() - 1;
+                while (first < last) {
+                    final int mid = (first + last + 1) >>> 1;
+                    if (group.members.get(mid).groupOffset <= local) {
+                        first = mid;
+                    } else {
+                        last = mid - 1;
+                    }
+                }
+                return group.position + first;
+            }
+
+            private int groupOf(int position) {
+                if (position < 0 || position >= size) {
+                    throw new IndexOutOfBoundsException("Position " + position + " is outside of [0 to " + size + '[');
+                }
+                int low = 0;
+                int high = groups.size() - 1;
+                while (low < high) {
+                    final int mid = (low + high + 1) >>> 1;
+                    if (groups.get(mid).position <= position) {
+                        low = mid;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+                return low;
+            }
+
+            /**
+             * Drops the group if it is empty, or merges it into the previous
+             * group if both are small.
+             *
+             * @return the first group with an outdated position.
+             */
+            private int merge(int g) {
+                final SectionGroup group = groups.get(g);
+                if (group.members.isEmpty()) {
+                    groups.remove(g);
+                    return Math.max(0, g - 1);
+                }
+                if (g > 0 && group.members.size() < GROUP_LIMIT / 4) {
+                    final SectionGroup previous = groups.get(g - 1);
+                    if (previous.members.size() + group.members.size() <= GROUP_LIMIT / 2) {
+                        for (LinkedListSection section : group.members) {
+                            section.groupOffset += group.start - previous.start;
+                            section.group = previous;
+                        }
+                        previous.members.addAll(group.members);
+                        groups.remove(g);
+                        return g - 1;
+                    }
+                }
+                return g;
+            }
+
+            private void renumber(int from) {
+                int position = from == 0 ? 0 : groups.get(from - 1).position + groups.get(from - 1).members.size();
+                for (int i = from; i < groups.size(); i++) {
+                    final SectionGroup group = groups.get(i);
+                    group.position = position;
+                    position += group.members.size();
+                }
+            }
+
+            private void detach(LinkedListSection section) {
+                final int start = section.start();
+                section.group = null;
+                section.groupOffset = start;
+            }
+        }
+
+        private final class SectionGroup {
+
+            // the base of the start indices of the members
+            private int start;
+            // the position of the first member in the tree
+            private int position;
+            private final ArrayList<LinkedListSection> members = new ArrayList<>();
+
+            private SectionGroup(int start) {
+                this.start = start;
+            }
+        }
+
+        private class LinkedListSection {
+
+            // null while the section is not in the tree
+            private SectionGroup group;
+            // the start index relative to the group, or the global start index while not in the tree
+            private int groupOffset;
+            // null while the section is only available packed
+            private RecyclingLinkedList<F> values = new RecyclingLinkedList<>(nodes);
+            // the encoded values of a cold section, null if the section was modified since
+            private byte[] packed;
+            private int packedSize;
+            private long lastModified;
+            // null as long as there is no handle into this section
+            private ArrayList<Handle> handles;
+            // null while summaries are disabled or the summary needs to be rebuilt
+            private Summary summary;
+            // STALE while aggregation is disabled or the aggregate needs to be rebuilt
+            private Object aggregate = STALE;
+            // true while the section is waiting for a switch between dense and sparse
+            private boolean reshapePending;
+
+            public LinkedListSection(int index) {
+                this.groupOffset = index;
+            }
+
+            /**
+             * @return the global index of the first element.
+             */
+            private int start() {
+                return group == null ? groupOffset : group.start + groupOffset;
+            }
+
+            private void start(int start) {
+                groupOffset = group == null ? start : start - group.start;
+            }
+
+            private RecyclingLinkedList<F> values() {
+                if (values == null) {
+                    values = cold.load(this);
+                } else if (packed != null) {
+                    cold.hit(this);
+                }
+                return values;
+            }
+
+            private int size() {
+                return values != null ? values.size() : packedSize;
+            }
+
+            private F first() {
+                return values != null ? values.getFirst() : ColdSections.decodeFirst(packed);
+            }
+
+            private F get(int globalIndex) {
+                final int localIndex = globalIndex - start();
+                if (localIndex < 0 || localIndex > size()) {
+                    return null;
+                }
+                return values().get(localIndex);
+            }
+
+            private void add(int globalIndex, F element) {
+                final int localIndex = globalIndex - start();
+                if (localIndex >= 0 && localIndex <= size()) {
+                    addLocal(localIndex, element);
+                }
+            }
+
+            private void addLocal(int localIndex, F element) {
+                values().add(localIndex, element);
+                shiftHandles(localIndex, 1);
+            }
+
+            private F set(int globalIndex, F element) {
+                final int localIndex = globalIndex - start();
+                if (localIndex < 0 || localIndex > size()) {
+                    return null;
+                } else {
+                    return values().set(localIndex, element);
+                }
+            }
+
+            private F remove(int globalIndex) {
+                final int localIndex = globalIndex - start();
+                if (localIndex < 0 || localIndex >= size()) {
+                    return null;
+                }
+                return removeLocal(localIndex);
+            }
+
+            private F removeLocal(int localIndex) {
+                final F removed = values().remove(localIndex);
+                if (handles != null) {
+                    for (Iterator<Handle> it = handles.iterator(); it.hasNext(); ) {
+                        final Handle handle = it.next();
+                        if (handle.offset == localIndex) {
+                            // the element is gone
+                            handle.section = null;
+                            it.remove();
+                        } else if (handle.offset > localIndex) {
+                            handle.offset--;
+                        }
+                    }
+                }
+                return removed;
+            }
+
+            private void addHandle(Handle handle) {
+                if (handles == null) {
+                    handles = new ArrayList<>(2);
+                }
+                handle.section = this;
+                handles.add(handle);
+            }
+
+            /**
+             * Adds delta to the offset of all handles at or behind the local
+             * index.
+             */
+            private void shiftHandles(int localIndex, int delta) {
+                if (handles != null) {
+                    for (Handle handle : handles) {
+                        if (handle.offset >= localIndex) {
+                            handle.offset += delta;
+                        }
+                    }
+                }
+            }
+
+            /**
+             * Moves the handles in the local range [from, to[ to the target
+             * section, where the range starts at targetOffset.
+             */
+            private void moveHandles(int from, int to, LinkedListSection target, int targetOffset) {
+                if (handles != null) {
+                    for (Iterator<Handle> it = handles.iterator(); it.hasNext(); ) {
+                        final Handle handle = it.next();
+                        if (handle.offset >= from && handle.offset < to) {
+                            it.remove();
+                            handle.offset = handle.offset - from + targetOffset;
+                            target.addHandle(handle);
+                        }
+                    }
+                }
+            }
+
+            private void invalidateHandles() {
+                if (handles != null) {
+                    for (Handle handle : handles) {
+                        handle.section = null;
+                    }
+                    handles = null;
+                }
+            }
+
+            private void split(SectionTree rootList, int splitNodeIndex, int[] cuts) {
+                int previous = 0;
+                for (int cut : cuts) {
+                    if (cut <= previous || cut >= size()) {
+                        throw new IllegalStateException("The split policy returned invalid cuts " + Arrays.toString(cuts) + " for a size of " + size());
+                    }
+                    previous = cut;
+                }
+                if (cuts.length == 0) {
+                    throw new IllegalStateException("The split policy returned no cut for a size of " + size());
+                }
+                // from the back, so the cuts stay valid
+                for (int i = cuts.length - 1; i >= 0; i--) {
+                    final int cut = cuts[i];
+                    LinkedListSection nextNode = newSection(start() + cut);
+                    // move the end of the list to a new bucket, by relinking the nodes
+                    values().moveTo(cut, nextNode.values());
+                    moveHandles(cut, Integer.MAX_VALUE, nextNode, 0);
+                    rootList.add(splitNodeIndex + 1, nextNode);
+                }
             }
 
             @Override
             public String toString() {
-                return "Section{" + "indices " + globalSectionStartIndex + " to "
-                        + (globalSectionStartIndex + values.size() - 1) + '}';
+                return "Section{" + "indices " + start() + " to "
+                        + (start() + size() - 1) + '}';
             }
 
         }
@@ -0,0 +1,512 @@
+package paxel.lib;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Builds a sorted {@link FrankenList} from input that does not fit into memory
+ * twice. The records are read in runs up to the memory budget, each run is
+ * sorted with {@link Arrays#parallelSort(Object[], int, int, Comparator)} on
+ * the fork-join pool and spilled to a temp file. The runs are then merged with
+ * a k-way merge and appended to the FrankenList, which fills each section up
+ * to the limit. The last run is not spilled, but merged from memory, so input
+ * that fits into the budget never touches the disk.
+ * <p>
+ * The sort is stable: records that compare equal keep their input order.
+ * Null records can not be spilled and are rejected.
+ * <pre>{@code
+ * FrankenList<String> sorted = new FrankenListSorter<>(FrankenListSorter.Codec.STRING, null)
+ *         .memoryBudget(256 << 20)
+ *         .sort(Path.of("names.txt"), StandardCharsets.UTF_8, Function.identity());
+ * }</pre>
+ *
+ * @param <E> the element type.
+ */
+public final class FrankenListSorter<E> {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Codec<E> codec;
+
+    private final Comparator<Object> comparator;
+
+    private long memoryBudget = 64L << 20;
+
+    private ToLongFunction<? super E> weigher = value -> 64;
+
+    private int sectionSizeLimit = 750;
+
+    private int fanIn = 64;
+
+    // null for the default temp directory
+    private Path tempDirectory;
+
+    /**
+     * Creates a sorter.
+     *
+     * @param codec      Writes and reads the records of the spilled runs.
+     * @param comparator The order of the result. A {@code null} value
+     *                   indicates that the elements'
+     *                   {@linkplain Comparable natural ordering} should be
+     *                   used.
+     */
+    public FrankenListSorter(Codec<E> codec, Comparator<? super E> comparator) {
+        this.codec = Objects.requireNonNull(codec, "codec");
+        // the sorted buffers only hold records
+        @SuppressWarnings("unchecked")
+        final Comparator<Object> order = comparator == null
+                ? (Comparator<Object>) (Comparator<?>) Comparator.naturalOrder()
+                : (Comparator<Object>) comparator;
+        this.comparator = order;
+    }
+
+    /**
+     * Sets the memory available for a run. A run is spilled as soon as the
+     * weight of its records reaches the budget. Default is 64 MB.
+     *
+     * @param bytes The budget in bytes.
+     * @return this sorter.
+     */
+    public FrankenListSorter<E> memoryBudget(long bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("The memory budget must be positive but was " + bytes);
+        }
+        this.memoryBudget = bytes;
+        return this;
+    }
+
+    /**
+     * Sets the estimate of the heap size of a record, that is held against
+     * the memory budget. Default is 64 bytes per record.
+     *
+     * @param weigher The estimate in bytes.
+     * @return this sorter.
+     */
+    public FrankenListSorter<E> weigher(ToLongFunction<? super E> weigher) {
+        this.weigher = Objects.requireNonNull(weigher, "weigher");
+        return this;
+    }
+
+    /**
+     * Sets the section size limit of the result. Default is 750.
+     *
+     * @param sectionSizeLimit The section size limit.
+     * @return this sorter.
+     */
+    public FrankenListSorter<E> sectionSizeLimit(int sectionSizeLimit) {
+        this.sectionSizeLimit = sectionSizeLimit;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of runs merged at once. More runs are first
+     * merged in groups into bigger runs. Each merged run holds a read buffer
+     * of 64 KB. Default is 64.
+     *
+     * @param fanIn The maximum number of merged runs.
+     * @return this sorter.
+     */
+    public FrankenListSorter<E> fanIn(int fanIn) {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("The fan in must be at least 2 but was " + fanIn);
+        }
+        this.fanIn = fanIn;
+        return this;
+    }
+
+    /**
+     * Sets the directory of the spilled runs. Default is the temp directory
+     * of the system.
+     *
+     * @param tempDirectory The directory.
+     * @return this sorter.
+     */
+    public FrankenListSorter<E> tempDirectory(Path tempDirectory) {
+        this.tempDirectory = tempDirectory;
+        return this;
+    }
+
+    /**
+     * Sorts the lines of a file.
+     *
+     * @param file    The file.
+     * @param charset The charset of the file.
+     * @param parser  Creates a record from a line.
+     * @return the sorted list.
+     * @throws IOException if the file could not be read or a run could not be
+     *                     spilled.
+     */
+    public FrankenList<E> sort(Path file, Charset charset, Function<String, ? extends E> parser) throws IOException {
+        try (Stream<String> lines = Files.lines(file, charset)) {
+            return sort(lines.map(parser));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Sorts the records of a stream. The stream is consumed, but not closed.
+     *
+     * @param records The records.
+     * @return the sorted list.
+     * @throws IOException if a run could not be spilled.
+     */
+    public FrankenList<E> sort(Stream<? extends E> records) throws IOException {
+        return sort(records.iterator());
+    }
+
+    /**
+     * Sorts the records of an iterator.
+     *
+     * @param records The records.
+     * @return the sorted list.
+     * @throws IOException if a run could not be spilled.
+     */
+    public FrankenList<E> sort(Iterator<? extends E> records) throws IOException {
+        final List<Run> runs = new ArrayList<>();
+        Throwable failure = null;
+        try {
+            Object[] buffer = new Object[1024];
+            int count = 0;
+            long weight = 0;
+            while (records.hasNext()) {
+                final E value = Objects.requireNonNull(records.next(), "A null record can not be sorted");
+                if (count == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, count * 2);
+                }
+                buffer[count++] = value;
+                weight += weigher.applyAsLong(value);
+                if (weight >= memoryBudget) {
+                    Arrays.parallelSort(buffer, 0, count, comparator);
+                    runs.add(spill(buffer, count));
+                    // let the records of the spilled run go
+                    Arrays.fill(buffer, 0, count, null);
+                    count = 0;
+                    weight = 0;
+                }
+            }
+            Arrays.parallelSort(buffer, 0, count, comparator);
+            // the run in memory is merged as well
+            while (runs.size() + 1 > fanIn) {
+                mergePass(runs);
+            }
+            final FrankenList<E> result = new FrankenList<>(sectionSizeLimit);
+            try (Sources sources = new Sources()) {
+                for (Run run : runs) {
+                    sources.list.add(new RunSource(run, sources.list.size()));
+                }
+                sources.list.add(new MemorySource(buffer, count, sources.list.size()));
+                merge(sources.list, result::add);
+            }
+            return result;
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            delete(runs, failure);
+        }
+    }
+
+    // the buffers and sources only hold records of the sorted stream or the codec
+    @SuppressWarnings("unchecked")
+    private static <E> E record(Object value) {
+        return (E) value;
+    }
+
+    private Run spill(Object[] sorted, int count) throws IOException {
+        final Run run = new Run(createTempFile(), count);
+        try (DataOutputStream out = output(run.file)) {
+            for (int i = 0; i < count; i++) {
+                codec.write(record(sorted[i]), out);
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Merges consecutive groups of runs into one run each. Keeping the order
+     * of the runs keeps the sort stable.
+     */
+    private void mergePass(List<Run> runs) throws IOException {
+        final List<Run> merged = new ArrayList<>();
+        try {
+            for (int from = 0; from < runs.size(); from += fanIn) {
+                final List<Run> group = runs.subList(from, Math.min(from + fanIn, runs.size()));
+                if (group.size() == 1) {
+                    merged.add(group.getFirst());
+                    continue;
+                }
+                long count = 0;
+                for (Run run : group) {
+                    count += run.count;
+                }
+                final Run target = new Run(createTempFile(), count);
+                merged.add(target);
+                try (DataOutputStream out = output(target.file); Sources sources = new Sources()) {
+                    for (Run run : group) {
+                        sources.list.add(new RunSource(run, sources.list.size()));
+                    }
+                    merge(sources.list, value -> codec.write(value, out));
+                }
+                for (Run run : group) {
+                    Files.deleteIfExists(run.file);
+                }
+            }
+        } catch (Throwable t) {
+            // the runs of the pass and its merged, maybe partial, output
+            delete(merged, t);
+            delete(runs, t);
+            throw t;
+        }
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    /**
+     * Deletes the files of all runs. A failing delete is added to the given
+     * failure, without one the first is thrown with the others suppressed.
+     */
+    private static void delete(List<Run> runs, Throwable failure) throws IOException {
+        IOException first = null;
+        for (Run run : runs) {
+            try {
+                Files.deleteIfExists(run.file);
+            } catch (IOException e) {
+                if (failure != null) {
+                    failure.addSuppressed(e);
+                } else if (first == null) {
+                    first = e;
+                } else {
+                    first.addSuppressed(e);
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    private void merge(List<Source> sources, Sink<E> sink) throws IOException {
+        final PriorityQueue<Source> queue = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> {
+            final int compare = comparator.compare(a.head, b.head);
+            // equal records are taken from the earlier run
+            return compare != 0 ? compare : Integer.compare(a.order, b.order);
+        });
+        for (Source source : sources) {
+            if (source.advance()) {
+                queue.add(source);
+            }
+        }
+        while (!queue.isEmpty()) {
+            final Source source = queue.poll();
+            sink.accept(record(source.head));
+            if (source.advance()) {
+                queue.add(source);
+            }
+        }
+    }
+
+    private Path createTempFile() throws IOException {
+        return tempDirectory == null
+                ? Files.createTempFile("franken", ".run")
+                : Files.createTempFile(tempDirectory, "franken", ".run");
+    }
+
+    private static DataOutputStream output(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+    }
+
+
+    /**
+     * Writes and reads the records of the spilled runs.
+     *
+     * @param <E> the element type.
+     */
+    public interface Codec<E> {
+
+        /**
+         * Strings as their UTF-8 bytes, without a length limit.
+         */
+        Codec<String> STRING = new Codec<>() {
+            @Override
+            public void write(String value, DataOutput out) throws IOException {
+                final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            @Override
+            public String read(DataInput in) throws IOException {
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+
+        /**
+         * Longs as 8 bytes.
+         */
+        Codec<Long> LONG = new Codec<>() {
+            @Override
+            public void write(Long value, DataOutput out) throws IOException {
+                out.writeLong(value);
+            }
+
+            @Override
+            public Long read(DataInput in) throws IOException {
+                return in.readLong();
+            }
+        };
+
+        /**
+         * Writes a record.
+         *
+         * @param value The record.
+         * @param out   The output.
+         * @throws IOException if the output fails.
+         */
+        void write(E value, DataOutput out) throws IOException;
+
+        /**
+         * Reads a record written by {@link #write(Object, DataOutput)}.
+         *
+         * @param in The input.
+         * @return the record.
+         * @throws IOException if the input fails.
+         */
+        E read(DataInput in) throws IOException;
+    }
+
+    private interface Sink<E> {
+
+        void accept(E value) throws IOException;
+    }
+
+    private static final class Run {
+
+        private final Path file;
+        private final long count;
+
+        private Run(Path file, long count) {
+            this.file = file;
+            this.count = count;
+        }
+    }
+
+    /**
+     * The sources of a merge. Closing closes all of them, the first failure
+     * is thrown with the others suppressed.
+     */
+    private static final class Sources implements Closeable {
+
+        private final List<Source> list = new ArrayList<>();
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (Source source : list) {
+                try {
+                    source.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private abstract static class Source {
+
+        private final int order;
+        Object head;
+
+        private Source(int order) {
+            this.order = order;
+        }
+
+        abstract boolean advance() throws IOException;
+
+        void close() throws IOException {
+        }
+    }
+
+    private static final class MemorySource extends Source {
+
+        private final Object[] values;
+        private final int count;
+        private int next;
+
+        private MemorySource(Object[] values, int count, int order) {
+            super(order);
+            this.values = values;
+            this.count = count;
+        }
+
+        @Override
+        boolean advance() {
+            if (next == count) {
+                head = null;
+                return false;
+            }
+            head = values[next];
+            // the merged record belongs to the list now
+            values[next++] = null;
+            return true;
+        }
+    }
+
+    private final class RunSource extends Source {
+
+        private final DataInputStream in;
+        private long remaining;
+
+        private RunSource(Run run, int order) throws IOException {
+            super(order);
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.file), BUFFER_SIZE));
+            this.remaining = run.count;
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                head = null;
+                return false;
+            }
+            remaining--;
+            head = codec.read(in);
+            return true;
+        }
+
+        @Override
+        void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package paxel.lib;
+
+import java.util.ArrayList;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+
+/**
+ * The FrankenTable is the columnar sibling of the {@link FrankenList}. It
+ * stores rows of primitive columns (e.g. timestamp, id, price, quantity)
+ * without an object per row. Like the FrankenList the rows are kept in
+ * sections of limited size, that are found via an ArrayList. Each section holds
+ * one primitive array per column, so a scan over a single column touches only
+ * the memory of that column.
+ * <p>
+ * Inserting or removing a row moves the rows behind it inside the section and
+ * increments/decrements the global start index of all following sections. If
+ * a section reaches the sectionSizeLimit, it is split in half and the upper
+ * half is inserted into the ArrayList as new section.
+ */
+public class FrankenTable {
+
+    private final ColumnType[] types;
+
+    private final int sectionSizeLimit;
+
+    private final ArrayList<Section> sections = new ArrayList<>();
+
+    private int rowCount;
+
+    /**
+     * Creates a table with the given columns and the default section size
+     * limit of 750 rows.
+     *
+     * @param types The types of the columns.
+     */
+    public FrankenTable(ColumnType... types) {
+        this(750, types);
+    }
+
+    /**
+     * Creates a table with the given columns.
+     *
+     * @param sectionSizeLimit The maximum number of rows in a section.
+     * @param types            The types of the columns.
+     */
+    public FrankenTable(int sectionSizeLimit, ColumnType... types) {
+        if (sectionSizeLimit < 2) {
+            throw new IllegalArgumentException("The section size limit must be at least 2 but was " + sectionSizeLimit);
+        }
+        this.sectionSizeLimit = sectionSizeLimit;
+        this.types = types.clone();
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * @return the number of columns.
+     */
+    public int columnCount() {
+        return types.length;
+    }
+
+    /**
+     * @param column The column.
+     * @return the type of the column.
+     */
+    public ColumnType columnType(int column) {
+        return types[column];
+    }
+
+    /**
+     * Removes all rows.
+     */
+    public void clear() {
+        sections.clear();
+        rowCount = 0;
+    }
+
+    /**
+     * Appends a row with all columns set to 0.
+     *
+     * @return the index of the new row.
+     */
+    public int addRow() {
+        Section last = sections.isEmpty() ? null : sections.getLast();
+        if (last == null || last.size >= sectionSizeLimit) {
+            last = new Section(rowCount);
+            sections.add(last);
+        }
+        for (int i = 0; i < types.length; i++) {
+            // the slot might contain an old value
+            types[i].clear(last.columns[i], last.size);
+        }
+        last.size++;
+        return rowCount++;
+    }
+
+    /**
+     * Inserts a row with all columns set to 0 at the given index. The rows at
+     * and behind the index are shifted by one.
+     *
+     * @param index The index of the new row.
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index > size())
+     */
+    public void insertRow(int index) {
+        if (index < 0 || index > rowCount) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + rowCount + ']');
+        }
+        if (index == rowCount) {
+            addRow();
+            return;
+        }
+        final int rootIndex = guessRootIndex(index);
+        final Section section = sections.get(rootIndex);
+        section.insert(index - section.globalSectionStartIndex);
+        for (int i = rootIndex + 1; i < sections.size(); i++) {
+            sections.get(i).globalSectionStartIndex++;
+        }
+        if (section.size > sectionSizeLimit) {
+            sections.add(rootIndex + 1, section.split());
+        }
+        rowCount++;
+    }
+
+    /**
+     * Removes the row at the given index. The rows behind it are shifted by
+     * one.
+     *
+     * @param index The index of the row.
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size())
+     */
+    public void removeRow(int index) {
+        checkIndex(index);
+        final int rootIndex = guessRootIndex(index);
+        final Section section = sections.get(rootIndex);
+        section.remove(index - section.globalSectionStartIndex);
+        for (int i = rootIndex + 1; i < sections.size(); i++) {
+            sections.get(i).globalSectionStartIndex--;
+        }
+        if (section.size == 0) {
+            sections.remove(rootIndex);
+        }
+        rowCount--;
+    }
+
+    /**
+     * @param row    The row.
+     * @param column The column of type {@link ColumnType#LONG}.
+     * @return the value.
+     * @throws ClassCastException if the column is not of type LONG.
+     */
+    public long getLong(int row, int column) {
+        final Section section = section(row);
+        return ((long[]) section.columns[column])[row - section.globalSectionStartIndex];
+    }
+
+    /**
+     * @param row    The row.
+     * @param column The column of type {@link ColumnType#INT}.
+     * @return the value.
+     * @throws ClassCastException if the column is not of type INT.
+     */
+    public int getInt(int row, int column) {
+        final Section section = section(row);
+        return ((int[]) section.columns[column])[row - section.globalSectionStartIndex];
+    }
+
+    /**
+     * @param row    The row.
+     * @param column The column of type {@link ColumnType#DOUBLE}.
+     * @return the value.
+     * @throws ClassCastException if the column is not of type DOUBLE.
+     */
+    public double getDouble(int row, int column) {
+        final Section section = section(row);
+        return ((double[]) section.columns[column])[row - section.globalSectionStartIndex];
+    }
+
+    /**
+     * @param row    The row.
+     * @param column The column of type {@link ColumnType#LONG}.
+     * @param value  The new value.
+     * @throws ClassCastException if the column is not of type LONG.
+     */
+    public void setLong(int row, int column, long value) {
+        final Section section = section(row);
+        ((long[]) section.columns[column])[row - section.globalSectionStartIndex] = value;
+    }
+
+    /**
+     * @param row    The row.
+     * @param column The column of type {@link ColumnType#INT}.
+     * @param value  The new value.
+     * @throws ClassCastException if the column is not of type INT.
+     */
+    public void setInt(int row, int column, int value) {
+        final Section section = section(row);
+        ((int[]) section.columns[column])[row - section.globalSectionStartIndex] = value;
+    }
+
+    /**
+     * @param row    The row.
+     * @param column The column of type {@link ColumnType#DOUBLE}.
+     * @param value  The new value.
+     * @throws ClassCastException if the column is not of type DOUBLE.
+     */
+    public void setDouble(int row, int column, double value) {
+        final Section section = section(row);
+        ((double[]) section.columns[column])[row - section.globalSectionStartIndex] = value;
+    }
+
+    /**
+     * Scans a single column in row order. No other column is touched.
+     *
+     * @param column   The column of type {@link ColumnType#LONG}.
+     * @param consumer Receives the values.
+     */
+    public void forEachLong(int column, LongConsumer consumer) {
+        for (Section section : sections) {
+            final long[] values = (long[]) section.columns[column];
+            for (int i = 0; i < section.size; i++) {
+                consumer.accept(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Scans a single column in row order. No other column is touched.
+     *
+     * @param column   The column of type {@link ColumnType#INT}.
+     * @param consumer Receives the values.
+     */
+    public void forEachInt(int column, IntConsumer consumer) {
+        for (Section section : sections) {
+            final int[] values = (int[]) section.columns[column];
+            for (int i = 0; i < section.size; i++) {
+                consumer.accept(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Scans a single column in row order. No other column is touched.
+     *
+     * @param column   The column of type {@link ColumnType#DOUBLE}.
+     * @param consumer Receives the values.
+     */
+    public void forEachDouble(int column, DoubleConsumer consumer) {
+        for (Section section : sections) {
+            final double[] values = (double[]) section.columns[column];
+            for (int i = 0; i < section.size; i++) {
+                consumer.accept(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Reduces the values of a long or int column in the given row range.
+     *
+     * @param column   The column of type {@link ColumnType#LONG} or {@link ColumnType#INT}.
+     * @param from     The first row (inclusive).
+     * @param to       The last row (exclusive).
+     * @param identity The start value.
+     * @param op       Combines the intermediate result with the next value.
+     * @return the result.
+     */
+    public long reduceLong(int column, int from, int to, long identity, LongBinaryOperator op) {
+        checkRange(from, to);
+        long result = identity;
+        if (from == to) {
+            return result;
+        }
+        for (int rootIndex = guessRootIndex(from); rootIndex < sections.size(); rootIndex++) {
+            final Section section = sections.get(rootIndex);
+            final int start = section.globalSectionStartIndex;
+            if (start >= to) {
+                break;
+            }
+            final int first = Math.max(from - start, 0);
+            final int end = Math.min(to - start, section.size);
+            if (types[column] == ColumnType.INT) {
+                final int[] values = (int[]) section.columns[column];
+                for (int i = first; i < end; i++) {
+                    result = op.applyAsLong(result, values[i]);
+                }
+            } else {
+                final long[] values = (long[]) section.columns[column];
+                for (int i = first; i < end; i++) {
+                    result = op.applyAsLong(result, values[i]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reduces the values of a double column in the given row range.
+     *
+     * @param column   The column of type {@link ColumnType#DOUBLE}.
+     * @param from     The first row (inclusive).
+     * @param to       The last row (exclusive).
+     * @param identity The start value.
+     * @param op       Combines the intermediate result with the next value.
+     * @return the result.
+     */
+    public double reduceDouble(int column, int from, int to, double identity, DoubleBinaryOperator op) {
+        checkRange(from, to);
+        double result = identity;
+        if (from == to) {
+            return result;
+        }
+        for (int rootIndex = guessRootIndex(from); rootIndex < sections.size(); rootIndex++) {
+            final Section section = sections.get(rootIndex);
+            final int start = section.globalSectionStartIndex;
+            if (start >= to) {
+                break;
+            }
+            final double[] values = (double[]) section.columns[column];
+            final int end = Math.min(to - start, section.size);
+            for (int i = Math.max(from - start, 0); i < end; i++) {
+                result = op.applyAsDouble(result, values[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a new table containing only the given columns, in the given
+     * order. Only the arrays of the requested columns are read.
+     *
+     * @param columns The columns of this table.
+     * @return the new table.
+     */
+    public FrankenTable project(int... columns) {
+        final ColumnType[] projectedTypes = new ColumnType[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            projectedTypes[i] = types[columns[i]];
+        }
+        final FrankenTable result = new FrankenTable(sectionSizeLimit, projectedTypes);
+        for (Section section : sections) {
+            final Section copy = result.new Section(section.globalSectionStartIndex);
+            for (int i = 0; i < columns.length; i++) {
+                System.arraycopy(section.columns[columns[i]], 0, copy.columns[i], 0, section.size);
+            }
+            copy.size = section.size;
+            result.sections.add(copy);
+        }
+        result.rowCount = rowCount;
+        return result;
+    }
+
+    /**
+     * Copies a long column into a new array.
+     *
+     * @param column The column of type {@link ColumnType#LONG}.
+     * @return the values in row order.
+     */
+    public long[] toLongArray(int column) {
+        final long[] result = new long[rowCount];
+        for (Section section : sections) {
+            System.arraycopy((long[]) section.columns[column], 0, result, section.globalSectionStartIndex, section.size);
+        }
+        return result;
+    }
+
+    /**
+     * Copies a double column into a new array.
+     *
+     * @param column The column of type {@link ColumnType#DOUBLE}.
+     * @return the values in row order.
+     */
+    public double[] toDoubleArray(int column) {
+        final double[] result = new double[rowCount];
+        for (Section section : sections) {
+            System.arraycopy((double[]) section.columns[column], 0, result, section.globalSectionStartIndex, section.size);
+        }
+        return result;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= rowCount) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + rowCount + '[');
+        }
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > rowCount || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + to + " is outside of [0 to " + rowCount + ']');
+        }
+    }
+
+    private Section section(int row) {
+        checkIndex(row);
+        return sections.get(guessRootIndex(row));
+    }
+
+    private int guessRootIndex(int index) {
+        final int lastBucket = sections.size() - 1;
+        if (index == 0 || lastBucket <= 0) {
+            return 0;
+        }
+        if (index >= sections.get(lastBucket).globalSectionStartIndex) {
+            return lastBucket;
+        }
+        int guessedIndex = Math.min(index / sectionSizeLimit, lastBucket);
+        for (;;) {
+            final Section test = sections.get(guessedIndex);
+            if (test.globalSectionStartIndex <= index) {
+                if (sections.get(guessedIndex + 1).globalSectionStartIndex > index) {
+                    return guessedIndex;
+                }
+                // it is maybe in the next one
+                guessedIndex++;
+            } else {
+                // it is maybe in the previous one
+                guessedIndex--;
+            }
+        }
+    }
+
+    /**
+     * The type of a column.
+     */
+    public enum ColumnType {
+        INT, LONG, DOUBLE;
+
+        private Object newArray(int length) {
+            return switch (this) {
+                case INT -> new int[length];
+                case LONG -> new long[length];
+                case DOUBLE -> new double[length];
+            };
+        }
+
+        private void clear(Object array, int index) {
+            switch (this) {
+                case INT -> ((int[]) array)[index] = 0;
+                case LONG -> ((long[]) array)[index] = 0;
+                case DOUBLE -> ((double[]) array)[index] = 0;
+            }
+        }
+    }
+
+    private final class Section {
+
+        private int globalSectionStartIndex;
+        private int size;
+        // one array per column with room for one row more than the limit
+        private final Object[] columns;
+
+        private Section(int globalSectionStartIndex) {
+            this.globalSectionStartIndex = globalSectionStartIndex;
+            this.columns = new Object[types.length];
+            for (int i = 0; i < types.length; i++) {
+                columns[i] = types[i].newArray(sectionSizeLimit + 1);
+            }
+        }
+
+        private void insert(int localIndex) {
+            for (int i = 0; i < columns.length; i++) {
+                System.arraycopy(columns[i], localIndex, columns[i], localIndex + 1, size - localIndex);
+                types[i].clear(columns[i], localIndex);
+            }
+            size++;
+        }
+
+        private void remove(int localIndex) {
+            for (Object column : columns) {
+                System.arraycopy(column, localIndex + 1, column, localIndex, size - localIndex - 1);
+            }
+            size--;
+        }
+
+        private Section split() {
+            final int nextIndex = sectionSizeLimit / 2;
+            final Section next = new Section(globalSectionStartIndex + nextIndex);
+            for (int i = 0; i < columns.length; i++) {
+                System.arraycopy(columns[i], nextIndex, next.columns[i], 0, size - nextIndex);
+            }
+            next.size = size - nextIndex;
+            size = nextIndex;
+            return next;
+        }
+
+        @Override
+        public String toString() {
+            return "Section{" + "rows " + globalSectionStartIndex + " to "
+                    + (globalSectionStartIndex + size - 1) + '}';
+        }
+    }
+}
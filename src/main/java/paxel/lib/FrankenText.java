@@ -0,0 +1,515 @@
+package paxel.lib;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+/**
+ * The FrankenText is a char specialized FrankenList for very large texts. The
+ * text is kept in sections of char arrays with a limited size, that are found
+ * via an ArrayList. Inserting or deleting text only moves the chars of the
+ * touched sections, and increments/decrements the global start offset of the
+ * following sections. Each section also counts its line breaks, so lines are
+ * found without scanning the text.
+ * <p>
+ * {@link #subSequence(int, int)} returns a view without copying. The view
+ * fails with a {@link ConcurrentModificationException} if the text was
+ * modified after its creation.
+ */
+public class FrankenText implements CharSequence {
+
+    private final int sectionSizeLimit;
+
+    private final ArrayList<Section> sections = new ArrayList<>();
+
+    private int length;
+
+    private int lineBreaks;
+
+    private int modCount;
+
+    // the section of the last access, for sequential reads
+    private int lastRootIndex;
+
+    /**
+     * Creates an empty text with sections of 4096 chars.
+     */
+    public FrankenText() {
+        this(4096);
+    }
+
+    /**
+     * Creates an empty text.
+     *
+     * @param sectionSizeLimit The maximum number of chars in a section.
+     */
+    public FrankenText(int sectionSizeLimit) {
+        if (sectionSizeLimit < 2) {
+            throw new IllegalArgumentException("The section size limit must be at least 2 but was " + sectionSizeLimit);
+        }
+        this.sectionSizeLimit = sectionSizeLimit;
+    }
+
+    /**
+     * Creates a text with the given content and sections of 4096 chars.
+     *
+     * @param text The initial content.
+     */
+    public FrankenText(CharSequence text) {
+        this();
+        // not the overridable append, the text is not fully constructed yet
+        insertText(0, text);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + length + '[');
+        }
+        final Section section = sections.get(findRootIndex(index));
+        return section.chars[index - section.start];
+    }
+
+    /**
+     * Returns a view of the range. Nothing is copied.
+     *
+     * @param start the start index, inclusive
+     * @param end   the end index, exclusive
+     * @return the view.
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        checkRange(start, end);
+        return new View(start, end, modCount);
+    }
+
+    @Override
+    public String toString() {
+        return copy(0, length);
+    }
+
+    /**
+     * Appends the text at the end.
+     *
+     * @param text The text.
+     */
+    public void append(CharSequence text) {
+        insert(length, text);
+    }
+
+    /**
+     * Inserts the text at the offset. The chars at and behind the offset are
+     * moved behind the inserted text.
+     *
+     * @param offset The offset.
+     * @param text   The text.
+     * @throws IndexOutOfBoundsException if the offset is out of range (offset < 0 || offset > length())
+     */
+    public void insert(int offset, CharSequence text) {
+        if (offset < 0 || offset > length) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " is outside of [0 to " + length + ']');
+        }
+        insertText(offset, text);
+    }
+
+    private void insertText(int offset, CharSequence text) {
+        final int count = text.length();
+        if (count == 0) {
+            return;
+        }
+        modCount++;
+        int rootIndex;
+        Section section;
+        if (sections.isEmpty()) {
+            section = new Section(0);
+            sections.add(section);
+            rootIndex = 0;
+        } else {
+            rootIndex = offset == length ? sections.size() - 1 : findRootIndex(offset);
+            section = sections.get(rootIndex);
+        }
+        final int local = offset - section.start;
+        final int newLines = countLineBreaks(text, 0, count);
+        if (section.size + count <= sectionSizeLimit) {
+            // fits into the section
+            System.arraycopy(section.chars, local, section.chars, local + count, section.size - local);
+            copyChars(text, 0, count, section.chars, local);
+            section.size += count;
+            section.lineBreaks += newLines;
+        } else {
+            // cut the section at the offset and put the text in between
+            final List<Section> inserted = new ArrayList<>();
+            final Section tail = new Section(0);
+            tail.size = section.size - local;
+            System.arraycopy(section.chars, local, tail.chars, 0, tail.size);
+            tail.lineBreaks = countLineBreaks(tail.chars, 0, tail.size);
+            section.size = local;
+            section.lineBreaks -= tail.lineBreaks;
+
+            int pos = 0;
+            // fill up the current section first
+            final int first = Math.min(sectionSizeLimit - section.size, count);
+            copyChars(text, 0, first, section.chars, section.size);
+            section.size += first;
+            section.lineBreaks += countLineBreaks(text, 0, first);
+            pos += first;
+            while (pos < count) {
+                final Section next = new Section(0);
+                final int chunk = Math.min(sectionSizeLimit, count - pos);
+                copyChars(text, pos, pos + chunk, next.chars, 0);
+                next.size = chunk;
+                next.lineBreaks = countLineBreaks(text, pos, pos + chunk);
+                inserted.add(next);
+                pos += chunk;
+            }
+            final Section last = inserted.isEmpty() ? section : inserted.getLast();
+            if (last.size + tail.size <= sectionSizeLimit) {
+                System.arraycopy(tail.chars, 0, last.chars, last.size, tail.size);
+                last.size += tail.size;
+                last.lineBreaks += tail.lineBreaks;
+            } else if (rootIndex + 1 < sections.size() && sections.get(rootIndex + 1).size + tail.size <= sectionSizeLimit) {
+                // prepend to the following section instead of creating a small one
+                final Section following = sections.get(rootIndex + 1);
+                System.arraycopy(following.chars, 0, following.chars, tail.size, following.size);
+                System.arraycopy(tail.chars, 0, following.chars, 0, tail.size);
+                following.size += tail.size;
+                following.lineBreaks += tail.lineBreaks;
+            } else if (tail.size > 0) {
+                inserted.add(tail);
+            }
+            sections.addAll(rootIndex + 1, inserted);
+        }
+        length += count;
+        lineBreaks += newLines;
+        updateStarts(rootIndex);
+    }
+
+    /**
+     * Deletes the chars in the range.
+     *
+     * @param start the start index, inclusive
+     * @param end   the end index, exclusive
+     * @throws IndexOutOfBoundsException if the range is not inside the text.
+     */
+    public void delete(int start, int end) {
+        checkRange(start, end);
+        if (start == end) {
+            return;
+        }
+        modCount++;
+        final int firstRoot = findRootIndex(start);
+        final int lastRoot = findRootIndex(end - 1);
+        int removedLineBreaks = 0;
+        final Section first = sections.get(firstRoot);
+        if (firstRoot == lastRoot) {
+            final int from = start - first.start;
+            final int to = end - first.start;
+            final int count = countLineBreaks(first.chars, from, to);
+            System.arraycopy(first.chars, to, first.chars, from, first.size - to);
+            first.size -= to - from;
+            first.lineBreaks -= count;
+            removedLineBreaks += count;
+        } else {
+            // cut the end of the first and the start of the last section, drop the ones in between
+            final int from = start - first.start;
+            final int firstCount = countLineBreaks(first.chars, from, first.size);
+            first.lineBreaks -= firstCount;
+            removedLineBreaks += firstCount;
+            first.size = from;
+
+            final Section last = sections.get(lastRoot);
+            final int to = end - last.start;
+            final int lastCount = countLineBreaks(last.chars, 0, to);
+            System.arraycopy(last.chars, to, last.chars, 0, last.size - to);
+            last.size -= to;
+            last.lineBreaks -= lastCount;
+            removedLineBreaks += lastCount;
+
+            final List<Section> between = sections.subList(firstRoot + 1, lastRoot);
+            for (Section section : between) {
+                removedLineBreaks += section.lineBreaks;
+            }
+            between.clear();
+            final int lastIndex = firstRoot + 1;
+            if (first.size + last.size <= sectionSizeLimit) {
+                // merge the remains
+                System.arraycopy(last.chars, 0, first.chars, first.size, last.size);
+                first.size += last.size;
+                first.lineBreaks += last.lineBreaks;
+                sections.remove(lastIndex);
+            } else if (last.size == 0) {
+                sections.remove(lastIndex);
+            }
+        }
+        length -= end - start;
+        lineBreaks -= removedLineBreaks;
+        if (first.size == 0) {
+            sections.remove(firstRoot);
+        }
+        updateStarts(Math.max(0, firstRoot - 1));
+    }
+
+    /**
+     * Replaces the chars in the range with the text.
+     *
+     * @param start the start index, inclusive
+     * @param end   the end index, exclusive
+     * @param text  The new text.
+     */
+    public void replace(int start, int end, CharSequence text) {
+        delete(start, end);
+        insert(start, text);
+    }
+
+    /**
+     * @return the number of lines. An empty text has one line, each line
+     * break adds another.
+     */
+    public int lineCount() {
+        return lineBreaks + 1;
+    }
+
+    /**
+     * Finds the offset of the first char of the line without scanning the
+     * text in front of it.
+     *
+     * @param line The line, starting with 0.
+     * @return the offset.
+     * @throws IndexOutOfBoundsException if the line is out of range (line < 0 || line >= lineCount())
+     */
+    public int lineStart(int line) {
+        if (line < 0 || line > lineBreaks) {
+            throw new IndexOutOfBoundsException("Line " + line + " is outside of [0 to " + lineBreaks + ']');
+        }
+        if (line == 0) {
+            return 0;
+        }
+        // the section containing the line break in front of the line
+        int low = 0;
+        int high = sections.size() - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (sections.get(mid).lineStart < line) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        final Section section = sections.get(low);
+        int remaining = line - section.lineStart;
+        for (int i = 0; i < section.size; i++) {
+            if (section.chars[i] == '\n' && --remaining == 0) {
+                return section.start + i + 1;
+            }
+        }
+        throw new IllegalStateException("Line index is corrupt");
+    }
+
+    /**
+     * Finds the line of an offset.
+     *
+     * @param offset The offset.
+     * @return the line, starting with 0.
+     * @throws IndexOutOfBoundsException if the offset is out of range (offset < 0 || offset > length())
+     */
+    public int lineOf(int offset) {
+        if (offset < 0 || offset > length) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " is outside of [0 to " + length + ']');
+        }
+        if (offset == length) {
+            return lineBreaks;
+        }
+        final Section section = sections.get(findRootIndex(offset));
+        return section.lineStart + countLineBreaks(section.chars, 0, offset - section.start);
+    }
+
+    /**
+     * Returns a view of the line without the line break.
+     *
+     * @param line The line, starting with 0.
+     * @return the view.
+     */
+    public CharSequence line(int line) {
+        final int start = lineStart(line);
+        final int end = line == lineBreaks ? length : lineStart(line + 1) - 1;
+        return subSequence(start, end);
+    }
+
+    /**
+     * @return the number of chars that are allocated by the sections.
+     */
+    int capacity() {
+        return sections.size() * sectionSizeLimit;
+    }
+
+    private String copy(int start, int end) {
+        final StringBuilder result = new StringBuilder(end - start);
+        if (start == end) {
+            return "";
+        }
+        for (int rootIndex = findRootIndex(start); rootIndex < sections.size(); rootIndex++) {
+            final Section section = sections.get(rootIndex);
+            if (section.start >= end) {
+                break;
+            }
+            final int from = Math.max(start - section.start, 0);
+            final int to = Math.min(end - section.start, section.size);
+            result.append(section.chars, from, to - from);
+        }
+        return result.toString();
+    }
+
+    private void checkRange(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range " + start + " to " + end + " is outside of [0 to " + length + ']');
+        }
+    }
+
+    /**
+     * Recalculates the start offsets and line starts behind the given section.
+     */
+    private void updateStarts(int from) {
+        if (sections.isEmpty()) {
+            return;
+        }
+        from = Math.min(from, sections.size() - 1);
+        final Section first = sections.get(from);
+        if (from == 0) {
+            // the first section might have been removed
+            first.start = 0;
+            first.lineStart = 0;
+        }
+        int start = first.start + first.size;
+        int lineStart = first.lineStart + first.lineBreaks;
+        for (int i = from + 1; i < sections.size(); i++) {
+            final Section section = sections.get(i);
+            section.start = start;
+            section.lineStart = lineStart;
+            start += section.size;
+            lineStart += section.lineBreaks;
+        }
+    }
+
+    private int findRootIndex(int index) {
+        // sequential access mostly hits the same section again
+        int rootIndex = Math.min(lastRootIndex, sections.size() - 1);
+        final Section last = sections.get(rootIndex);
+        if (index >= last.start && index < last.start + last.size) {
+            return rootIndex;
+        }
+        int low = 0;
+        int high = sections.size() - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (sections.get(mid).start <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        lastRootIndex = low;
+        return low;
+    }
+
+    private static int countLineBreaks(char[] chars, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (chars[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countLineBreaks(CharSequence text, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void copyChars(CharSequence text, int from, int to, char[] target, int offset) {
+        if (text instanceof String string) {
+            string.getChars(from, to, target, offset);
+        } else {
+            for (int i = from; i < to; i++) {
+                target[offset++] = text.charAt(i);
+            }
+        }
+    }
+
+    private final class Section {
+
+        private int start;
+        private int size;
+        // the number of line breaks in front of this section
+        private int lineStart;
+        private int lineBreaks;
+        private final char[] chars = new char[sectionSizeLimit];
+
+        private Section(int start) {
+            this.start = start;
+        }
+
+        @Override
+        public String toString() {
+            return "Section{" + "chars " + start + " to " + (start + size - 1) + '}';
+        }
+    }
+
+    private final class View implements CharSequence {
+
+        private final int start;
+        private final int end;
+        private final int expectedModCount;
+
+        private View(int start, int end, int expectedModCount) {
+            this.start = start;
+            this.end = end;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            checkModification();
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + (end - start) + '[');
+            }
+            return FrankenText.this.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            checkModification();
+            if (from < 0 || to > end - start || from > to) {
+                throw new IndexOutOfBoundsException("Range " + from + " to " + to + " is outside of [0 to " + (end - start) + ']');
+            }
+            return new View(start + from, start + to, expectedModCount);
+        }
+
+        @Override
+        public String toString() {
+            checkModification();
+            return copy(start, end);
+        }
+
+        private void checkModification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException("The text was modified after the view was created");
+            }
+        }
+    }
+}
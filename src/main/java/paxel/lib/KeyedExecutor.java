@@ -0,0 +1,213 @@
+package paxel.lib;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the tasks of the same key one after the other in submission order,
+ * while the tasks of different keys run in parallel on the shared executor of
+ * an {@link ExecutorCompletionService}. This is the grouped sequential
+ * processing of e.g. the events of one account or session.
+ * <p>
+ * Each key with work has a mailbox: a lock-free queue of its tasks and a
+ * single Runnable in the executor, that drains up to a batch of tasks before
+ * it gives the thread to other keys. A mailbox exists only while its key has
+ * work. The draining Runnable closes it as soon as it ran the last task, so
+ * idle keys cost nothing and need no cleanup.
+ * <p>
+ * A failing task fails its own future, the next task of the key runs anyway.
+ * If the executor rejects a mailbox, the futures of its tasks fail with the
+ * {@link RejectedExecutionException}. A bounded service lets each task hold a
+ * permit from its submission until it finished.
+ * <pre>{@code
+ * KeyedExecutor<String> accounts = completionService.keyed();
+ * accounts.submit(booking.account(), () -> ledger.book(booking));
+ * }</pre>
+ *
+ * @param <K> the key type.
+ */
+public final class KeyedExecutor<K> {
+
+    // the tail of a closed mailbox
+    private static final Object CLOSED = new Object();
+
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            TAIL = MethodHandles.lookup().findVarHandle(KeyedExecutor.Mailbox.class, "tail", Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ExecutorCompletionService service;
+
+    private final Executor executor;
+
+    private final int batchSize;
+
+    private final ConcurrentHashMap<K, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    KeyedExecutor(ExecutorCompletionService service, Executor executor, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive but was " + batchSize);
+        }
+        this.service = service;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Submits the task after all earlier tasks of the key.
+     *
+     * @param key  The key.
+     * @param task The task.
+     * @param <T>  The result type.
+     * @return the future of the task.
+     */
+    public <T> CompletableFuture<T> submit(K key, Callable<T> task) {
+        return enqueue(key, CompletingTask.of(task));
+    }
+
+    public <T> CompletableFuture<T> submit(K key, Runnable task, T result) {
+        return enqueue(key, CompletingTask.of(task, result));
+    }
+
+    public CompletableFuture<Void> submit(K key, Runnable task) {
+        return enqueue(key, CompletingTask.of(task, null));
+    }
+
+    public <T> CompletableFuture<T> submitExecutable(K key, UnstableExecutable task, T result) {
+        return enqueue(key, CompletingTask.of(task, result));
+    }
+
+    public CompletableFuture<Void> submitExecutable(K key, UnstableExecutable task) {
+        return enqueue(key, CompletingTask.of(task, null));
+    }
+
+    /**
+     * Returns the number of keys with unfinished tasks.
+     *
+     * @return the number of active keys.
+     */
+    public int activeKeys() {
+        return mailboxes.size();
+    }
+
+    private <T> CompletableFuture<T> enqueue(K key, CompletingTask<T> task) {
+        Objects.requireNonNull(key, "key");
+        service.admit(task);
+        while (true) {
+            final Mailbox mailbox = mailboxes.get(key);
+            if (mailbox == null) {
+                final Mailbox created = new Mailbox(key, task);
+                if (mailboxes.putIfAbsent(key, created) == null) {
+                    created.schedule();
+                    return task;
+                }
+            } else if (mailbox.offer(task)) {
+                return task;
+            } else {
+                // closed, but not removed yet
+                mailboxes.remove(key, mailbox);
+            }
+        }
+    }
+
+    /**
+     * The tasks of a key. Producers append by swapping the tail and linking
+     * the previous tail to the new one. Only the draining Runnable reads the
+     * queue, so its head needs no synchronization.
+     */
+    private final class Mailbox implements Runnable {
+
+        private final K key;
+
+        // the last task of the queue, or CLOSED
+        private volatile Object tail;
+
+        // the next task to run, only touched by the draining Runnable
+        private CompletingTask<?> head;
+
+        private Mailbox(K key, CompletingTask<?> first) {
+            this.tail = first;
+            this.key = key;
+            this.head = first;
+        }
+
+        private boolean offer(CompletingTask<?> task) {
+            while (true) {
+                final Object last = tail;
+                if (last == CLOSED) {
+                    return false;
+                }
+                if (TAIL.compareAndSet(this, last, task)) {
+                    ((CompletingTask<?>) last).next = task;
+                    return true;
+                }
+            }
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                reject(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            CompletingTask<?> task = head;
+            for (int i = 0; i < batchSize; i++) {
+                task.run();
+                task = following(task);
+                if (task == null) {
+                    return;
+                }
+            }
+            head = task;
+            // the remaining tasks wait behind the other keys
+            schedule();
+        }
+
+        /**
+         * Fails all remaining tasks, until the mailbox is closed.
+         */
+        private void reject(RejectedExecutionException e) {
+            CompletingTask<?> task = head;
+            while (task != null) {
+                task.abort(e);
+                task = following(task);
+            }
+        }
+
+        /**
+         * Returns the task after the given one, or closes the mailbox and
+         * returns null, if there is none.
+         */
+        private CompletingTask<?> following(CompletingTask<?> task) {
+            CompletingTask<?> next = task.next;
+            if (next == null) {
+                if (TAIL.compareAndSet(this, task, CLOSED)) {
+                    mailboxes.remove(key, this);
+                    return null;
+                }
+                // a producer swapped the tail, but did not link it yet
+                while ((next = task.next) == null) {
+                    Thread.onSpinWait();
+                }
+            }
+            // the finished task must not keep the rest of the queue reachable
+            task.next = null;
+            return next;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package paxel.lib;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A fixed number of permits for the tasks of a bounded
+ * {@link ExecutorCompletionService}. A task holds its permit from submission
+ * until it finished. Waiting submissions get the permits in the order they
+ * asked for them, and no new submission takes a permit while others wait.
+ */
+final class Permits {
+
+    private final int limit;
+
+    // guards the following fields
+    private final Object lock = new Object();
+    private int inFlight;
+    // the tickets of the waiting submissions, completed when they get a permit
+    private final ArrayDeque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+
+    Permits(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The permit count must be positive but was " + limit);
+        }
+        this.limit = limit;
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    int inFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    int queued() {
+        synchronized (lock) {
+            return waiting.size();
+        }
+    }
+
+    /**
+     * Takes a permit, if one is free and nobody waits.
+     */
+    boolean tryAcquire() {
+        synchronized (lock) {
+            if (inFlight < limit && waiting.isEmpty()) {
+                inFlight++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Waits until a permit is free and takes it.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     *                              It holds no permit then.
+     */
+    void acquire() throws InterruptedException {
+        final CompletableFuture<Void> ticket = acquireAsync();
+        try {
+            ticket.get();
+        } catch (InterruptedException e) {
+            if (!withdraw(ticket)) {
+                // got the permit while being interrupted
+                release();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            // the ticket is only ever completed normally
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns a ticket, that completes as soon as the permit is taken. A
+     * ticket that is not completed yet can be given back with
+     * {@link #withdraw(CompletableFuture)}.
+     */
+    CompletableFuture<Void> acquireAsync() {
+        synchronized (lock) {
+            if (inFlight < limit && waiting.isEmpty()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            final CompletableFuture<Void> ticket = new CompletableFuture<>();
+            waiting.add(ticket);
+            return ticket;
+        }
+    }
+
+    /**
+     * Removes a waiting ticket.
+     *
+     * @return {@code false} if the ticket got its permit already.
+     */
+    boolean withdraw(CompletableFuture<Void> ticket) {
+        synchronized (lock) {
+            return waiting.remove(ticket);
+        }
+    }
+
+    /**
+     * Gives a permit back. It is handed over to the longest waiting ticket,
+     * if there is one.
+     */
+    void release() {
+        final CompletableFuture<Void> next;
+        synchronized (lock) {
+            next = waiting.poll();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+        }
+        // completed outside the lock, the ticket may run the submission
+        next.complete(null);
+    }
+
+    /**
+     * Wraps the executor, so that each command waits for a permit and gives
+     * it back when it finished.
+     */
+    Executor bound(Executor executor) {
+        return command -> {
+            try {
+                acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for a permit", e);
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+        };
+    }
+}
@@ -0,0 +1,655 @@
+package paxel.lib;
+
+import java.util.AbstractSequentialList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A doubly linked list, that takes its nodes from a {@link Pool} and gives
+ * them back on removal, so that steady insert/remove churn does not allocate.
+ * Ranges of nodes can be moved to another list by relinking them, without
+ * copying or allocating.
+ * <p>
+ * A list with mostly null elements can be switched into a sparse form by
+ * {@link #reshape()}, which keeps only the non-null elements with their
+ * offsets in two arrays. The switch is not done on the fly, because it
+ * invalidates running iterators.
+ *
+ * @param <E> the element type.
+ */
+final class RecyclingLinkedList<E> extends AbstractSequentialList<E> {
+
+    // smaller lists stay dense
+    private static final int SPARSE_MIN_SIZE = 32;
+
+    private Pool pool;
+    private Node<E> first;
+    private Node<E> last;
+    private int size;
+    // the number of non-null elements
+    private int filled;
+    // the ascending offsets and values of the non-null elements, null while dense
+    private int[] offsets;
+    private Object[] items;
+
+    RecyclingLinkedList(Pool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Changes the pool, e.g. when the list is moved into another FrankenList.
+     *
+     * @param pool The new pool.
+     */
+    void pool(Pool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(E value) {
+        if (offsets != null) {
+            insert(size, value);
+        } else {
+            linkBefore(value, null);
+        }
+        return true;
+    }
+
+    @Override
+    public E getFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return offsets != null ? sparseGet(0) : first.item;
+    }
+
+    @Override
+    public E getLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return offsets != null ? sparseGet(size - 1) : last.item;
+    }
+
+    @Override
+    public void clear() {
+        for (Node<E> node = first; node != null; ) {
+            final Node<E> next = node.next;
+            pool.release(node);
+            node = next;
+        }
+        first = null;
+        last = null;
+        if (offsets != null) {
+            Arrays.fill(items, 0, filled, null);
+        }
+        size = 0;
+        filled = 0;
+        modCount++;
+    }
+
+    /**
+     * @return true if the list is in the sparse form.
+     */
+    boolean isSparse() {
+        return offsets != null;
+    }
+
+    /**
+     * @return true if {@link #reshape()} would switch the form: to sparse
+     * if at most a quarter of the elements is non-null, back to dense if more
+     * than half of them are.
+     */
+    boolean isReshapeDue() {
+        return offsets == null
+                ? size >= SPARSE_MIN_SIZE && filled <= size >> 2
+                : filled > size >> 1;
+    }
+
+    /**
+     * Switches between the dense and the sparse form, if it is due. Iterators
+     * of this list fail afterwards.
+     */
+    void reshape() {
+        if (!isReshapeDue()) {
+            return;
+        }
+        if (offsets == null) {
+            final int[] newOffsets = new int[Math.max(4, filled)];
+            final Object[] newItems = new Object[newOffsets.length];
+            int i = 0;
+            int offset = 0;
+            for (Node<E> node = first; node != null; offset++) {
+                final Node<E> next = node.next;
+                if (node.item != null) {
+                    newOffsets[i] = offset;
+                    newItems[i++] = node.item;
+                }
+                pool.release(node);
+                node = next;
+            }
+            first = null;
+            last = null;
+            offsets = newOffsets;
+            items = newItems;
+        } else {
+            final int[] oldOffsets = offsets;
+            final Object[] oldItems = items;
+            final int oldSize = size;
+            final int oldFilled = filled;
+            offsets = null;
+            items = null;
+            size = 0;
+            filled = 0;
+            int i = 0;
+            for (int offset = 0; offset < oldSize; offset++) {
+                if (i < oldFilled && oldOffsets[i] == offset) {
+                    linkBefore(item(oldItems, i++), null);
+                } else {
+                    linkBefore(null, null);
+                }
+            }
+        }
+        modCount++;
+    }
+
+    /**
+     * Moves the elements from the index to the end of this list to the end of
+     * the target list. The nodes are relinked, nothing is allocated.
+     *
+     * @param from   The index of the first moved element.
+     * @param target The receiving list.
+     */
+    void moveTo(int from, RecyclingLinkedList<E> target) {
+        if (from == size) {
+            return;
+        }
+        if (offsets != null || target.offsets != null) {
+            // copied element by element
+            for (ListIterator<E> it = listIterator(from); it.hasNext(); ) {
+                target.add(it.next());
+            }
+            truncate(from);
+            modCount++;
+            return;
+        }
+        final Node<E> head = node(from);
+        final Node<E> tail = last;
+        final int count = size - from;
+        int moved = 0;
+        for (Node<E> node = head; node != null; node = node.next) {
+            if (node.item != null) {
+                moved++;
+            }
+        }
+        filled -= moved;
+        target.filled += moved;
+        // cut
+        last = head.prev;
+        if (last == null) {
+            first = null;
+        } else {
+            last.next = null;
+        }
+        size = from;
+        // append
+        head.prev = target.last;
+        if (target.last == null) {
+            target.first = head;
+        } else {
+            target.last.next = head;
+        }
+        target.last = tail;
+        target.size += count;
+        modCount++;
+        target.modCount++;
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of [0 to " + size + ']');
+        }
+        return offsets != null ? new SparseItr(index) : new Itr(index);
+    }
+
+    /**
+     * Removes the elements from the index to the end.
+     */
+    private void truncate(int from) {
+        if (offsets != null) {
+            final int kept = find(from);
+            Arrays.fill(items, kept, filled, null);
+            filled = kept;
+            size = from;
+            return;
+        }
+        while (size > from) {
+            unlink(last);
+        }
+    }
+
+    /**
+     * @return the position of the first non-null element at or behind the
+     * offset, or the number of non-null elements.
+     */
+    private int find(int offset) {
+        int low = 0;
+        int high = filled;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (offsets[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // the sparse items are the non-null elements of the list
+    @SuppressWarnings("unchecked")
+    private static <E> E item(Object[] items, int i) {
+        return (E) items[i];
+    }
+
+    private E sparseGet(int offset) {
+        final int i = find(offset);
+        return i < filled && offsets[i] == offset ? item(items, i) : null;
+    }
+
+    private void insert(int offset, E value) {
+        final int i = find(offset);
+        for (int j = i; j < filled; j++) {
+            offsets[j]++;
+        }
+        if (value != null) {
+            put(i, offset, value);
+        }
+        size++;
+        modCount++;
+    }
+
+    private E delete(int offset) {
+        final int i = find(offset);
+        E removed = null;
+        if (i < filled && offsets[i] == offset) {
+            removed = item(items, i);
+            drop(i);
+        }
+        for (int j = i; j < filled; j++) {
+            offsets[j]--;
+        }
+        size--;
+        modCount++;
+        return removed;
+    }
+
+    private E replace(int offset, E value) {
+        final int i = find(offset);
+        if (i < filled && offsets[i] == offset) {
+            final E old = item(items, i);
+            if (value != null) {
+                items[i] = value;
+            } else {
+                drop(i);
+            }
+            return old;
+        }
+        if (value != null) {
+            put(i, offset, value);
+        }
+        return null;
+    }
+
+    private void put(int i, int offset, E value) {
+        if (filled == offsets.length) {
+            offsets = Arrays.copyOf(offsets, filled * 2);
+            items = Arrays.copyOf(items, filled * 2);
+        }
+        System.arraycopy(offsets, i, offsets, i + 1, filled - i);
+        System.arraycopy(items, i, items, i + 1, filled - i);
+        offsets[i] = offset;
+        items[i] = value;
+        filled++;
+    }
+
+    private void drop(int i) {
+        filled--;
+        System.arraycopy(offsets, i + 1, offsets, i, filled - i);
+        System.arraycopy(items, i + 1, items, i, filled - i);
+        items[filled] = null;
+    }
+
+    private Node<E> node(int index) {
+        if (index < (size >> 1)) {
+            Node<E> node = first;
+            for (int i = 0; i < index; i++) {
+                node = node.next;
+            }
+            return node;
+        }
+        Node<E> node = last;
+        for (int i = size - 1; i > index; i--) {
+            node = node.prev;
+        }
+        return node;
+    }
+
+    private void linkBefore(E value, Node<E> successor) {
+        final Node<E> node = pool.obtain();
+        node.item = value;
+        if (value != null) {
+            filled++;
+        }
+        if (successor == null) {
+            node.prev = last;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        } else {
+            node.prev = successor.prev;
+            node.next = successor;
+            if (successor.prev == null) {
+                first = node;
+            } else {
+                successor.prev.next = node;
+            }
+            successor.prev = node;
+        }
+        size++;
+        modCount++;
+    }
+
+    private void unlink(Node<E> node) {
+        if (node.prev == null) {
+            first = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            last = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        if (node.item != null) {
+            filled--;
+        }
+        size--;
+        modCount++;
+        pool.release(node);
+    }
+
+    private final class Itr implements ListIterator<E> {
+
+        private Node<E> lastReturned;
+        private Node<E> next;
+        private int nextIndex;
+        private int expectedModCount = modCount;
+
+        private Itr(int index) {
+            next = index == size ? null : node(index);
+            nextIndex = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < size;
+        }
+
+        @Override
+        public E next() {
+            checkModification();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = next.next;
+            nextIndex++;
+            return lastReturned.item;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextIndex > 0;
+        }
+
+        @Override
+        public E previous() {
+            checkModification();
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+            next = next == null ? last : next.prev;
+            lastReturned = next;
+            nextIndex--;
+            return lastReturned.item;
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        @Override
+        public void remove() {
+            checkModification();
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (next == lastReturned) {
+                // after previous()
+                next = lastReturned.next;
+            } else {
+                nextIndex--;
+            }
+            unlink(lastReturned);
+            lastReturned = null;
+            expectedModCount++;
+        }
+
+        @Override
+        public void set(E e) {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            checkModification();
+            if (lastReturned.item != null) {
+                filled--;
+            }
+            if (e != null) {
+                filled++;
+            }
+            lastReturned.item = e;
+        }
+
+        @Override
+        public void add(E e) {
+            checkModification();
+            lastReturned = null;
+            linkBefore(e, next);
+            nextIndex++;
+            expectedModCount++;
+        }
+
+        private void checkModification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Walks the offsets with a cursor into the non-null elements.
+     */
+    private final class SparseItr implements ListIterator<E> {
+
+        private int nextIndex;
+        // the offset of the last returned element, -1 if there is none
+        private int lastReturned = -1;
+        // the position of the first non-null element at or behind nextIndex
+        private int cursor;
+        private int expectedModCount = modCount;
+
+        private SparseItr(int index) {
+            nextIndex = index;
+            cursor = find(index);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < size;
+        }
+
+        @Override
+        public E next() {
+            checkModification();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = nextIndex++;
+            if (cursor < filled && offsets[cursor] == lastReturned) {
+                return item(items, cursor++);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextIndex > 0;
+        }
+
+        @Override
+        public E previous() {
+            checkModification();
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = --nextIndex;
+            if (cursor > 0 && offsets[cursor - 1] == lastReturned) {
+                return item(items, --cursor);
+            }
+            return null;
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        @Override
+        public void remove() {
+            checkModification();
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            delete(lastReturned);
+            if (lastReturned < nextIndex) {
+                nextIndex--;
+            }
+            lastReturned = -1;
+            cursor = find(nextIndex);
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void set(E e) {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            checkModification();
+            replace(lastReturned, e);
+            cursor = find(nextIndex);
+        }
+
+        @Override
+        public void add(E e) {
+            checkModification();
+            lastReturned = -1;
+            insert(nextIndex++, e);
+            cursor = find(nextIndex);
+            expectedModCount = modCount;
+        }
+
+        private void checkModification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    private static final class Node<E> {
+
+        private E item;
+        private Node<E> prev;
+        private Node<E> next;
+    }
+
+    /**
+     * A bounded free list of nodes. Released nodes beyond the limit are left
+     * to the garbage collector.
+     */
+    static final class Pool {
+
+        private final int limit;
+        private Node<Object> free;
+        private int size;
+
+        Pool(int limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * @return the number of free nodes.
+         */
+        int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <E> Node<E> obtain() {
+            final Node<Object> node = free;
+            if (node == null) {
+                return new Node<>();
+            }
+            free = node.next;
+            node.next = null;
+            size--;
+            return (Node<E>) (Node<?>) node;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void release(Node<?> released) {
+            if (size == limit) {
+                return;
+            }
+            final Node<Object> node = (Node<Object>) released;
+            // drop the references to the value and the neighbours
+            node.item = null;
+            node.prev = null;
+            node.next = free;
+            free = node;
+            size++;
+        }
+    }
+}
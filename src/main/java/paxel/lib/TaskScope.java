@@ -0,0 +1,224 @@
+package paxel.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A group of tasks, that are forked together and joined together. The first
+ * failing task cancels all others: tasks that did not start yet are dropped,
+ * running tasks are interrupted. Closing the scope cancels the remaining
+ * tasks and waits until none of them runs anymore, so no task outlives the
+ * scope. This is the shutdown-on-failure policy of the StructuredTaskScope,
+ * which is still a preview API.
+ * <pre>{@code
+ * try (TaskScope scope = ExecutorCompletionService.virtualThreads().scope()) {
+ *     CompletableFuture<User> user = scope.fork(() -> findUser(id));
+ *     CompletableFuture<List<Order>> orders = scope.fork(() -> fetchOrders(id));
+ *     scope.join();
+ *     return new Page(user.join(), orders.join());
+ * }
+ * }</pre>
+ */
+public final class TaskScope implements AutoCloseable {
+
+    private final Executor executor;
+
+    // guards the following fields
+    private final Object lock = new Object();
+    private final List<Fork<?>> forks = new ArrayList<>();
+    private int pending;
+    private Throwable failure;
+    private boolean closed;
+
+    TaskScope(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Starts the task in the executor of the scope. After a failure of
+     * another task, the task is not started and its future is cancelled.
+     *
+     * @param task The task.
+     * @param <T>  The result type.
+     * @return the future of the result.
+     * @throws IllegalStateException if the scope is closed.
+     */
+    public <T> CompletableFuture<T> fork(Callable<T> task) {
+        final Fork<T> fork = new Fork<>(task);
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("The scope is closed");
+            }
+            if (failure != null) {
+                fork.result.cancel(false);
+                return fork.result;
+            }
+            forks.add(fork);
+            pending++;
+        }
+        try {
+            executor.execute(fork);
+        } catch (RejectedExecutionException e) {
+            fork.fail(e);
+        }
+        return fork.result;
+    }
+
+    /**
+     * Waits until all forked tasks are finished or one of them failed.
+     *
+     * @throws ExecutionException   with the failure of the first failed task.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public void join() throws ExecutionException, InterruptedException {
+        synchronized (lock) {
+            while (pending > 0 && failure == null) {
+                lock.wait();
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+        }
+    }
+
+    /**
+     * Cancels all unfinished tasks and waits until none of them runs anymore.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        cancelAll();
+        boolean interrupted = false;
+        synchronized (lock) {
+            while (pending > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    // the tasks are interrupted already, they have to finish anyway
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void failed(Throwable t) {
+        synchronized (lock) {
+            if (failure != null) {
+                return;
+            }
+            failure = t;
+            lock.notifyAll();
+        }
+        cancelAll();
+    }
+
+    private void finished() {
+        synchronized (lock) {
+            if (--pending == 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void cancelAll() {
+        final List<Fork<?>> copy;
+        synchronized (lock) {
+            copy = new ArrayList<>(forks);
+        }
+        // drop the waiting tasks first, a thread freed by an interrupt must not start one of them
+        for (Fork<?> fork : copy) {
+            fork.drop();
+        }
+        for (Fork<?> fork : copy) {
+            fork.cancel();
+        }
+    }
+
+    private final class Fork<T> implements Runnable {
+
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+
+        private final Callable<T> task;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(NEW);
+        // the thread running the task, guarded by this
+        private Thread runner;
+
+        private Fork(Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(NEW, RUNNING)) {
+                // cancelled before it started
+                return;
+            }
+            synchronized (this) {
+                runner = Thread.currentThread();
+            }
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                if (result.completeExceptionally(t)) {
+                    failed(t);
+                }
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    state.set(DONE);
+                    // an interrupt of the cancel must not hit the next task of the thread
+                    Thread.interrupted();
+                }
+                finished();
+            }
+        }
+
+        /**
+         * Cancels the task, if it did not start yet.
+         */
+        private void drop() {
+            if (state.compareAndSet(NEW, DONE)) {
+                result.cancel(false);
+                finished();
+            }
+        }
+
+        private void cancel() {
+            if (!result.cancel(false)) {
+                // finished already
+                return;
+            }
+            if (state.compareAndSet(NEW, DONE)) {
+                finished();
+                return;
+            }
+            synchronized (this) {
+                if (runner != null) {
+                    runner.interrupt();
+                }
+            }
+        }
+
+        private void fail(Throwable t) {
+            if (state.compareAndSet(NEW, DONE)) {
+                result.completeExceptionally(t);
+                failed(t);
+                finished();
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package paxel.lib;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timing wheel: a ring of buckets, one per tick, and a single timer
+ * thread, that expires one bucket per tick. Scheduling a timeout pushes it on
+ * a lock-free stack, the timer thread moves it into the bucket of its deadline
+ * at the next tick. Scheduling and cancelling take constant time, no matter
+ * how many timeouts are pending, where a heap ordered delay queue pays a
+ * logarithmic insert and remove under a lock.
+ * <p>
+ * A timeout expires at the first tick at or after its deadline, so it is up
+ * to one tick late. Timeouts further away than a turn of the wheel stay in
+ * their bucket until the turn of their deadline. A cancelled timeout drops
+ * its target at once and leaves its bucket, when the bucket is visited next.
+ * <p>
+ * The timer thread starts with the wheel and ends after {@link #stop()}, as
+ * soon as no timeout is pending anymore. The timeouts are expired in the timer
+ * thread, so they must be short.
+ */
+final class TimingWheel {
+
+    // the top of the stack of scheduled timeouts, after the timer thread ended
+    private static final Timeout<Object> TERMINATED = new Timeout<>(0, null) {
+        @Override
+        void expire(Object target) {
+        }
+    };
+
+    private final long tickNanos;
+
+    private final Timeout<?>[] buckets;
+
+    private final int mask;
+
+    // the timeouts scheduled since the last tick, linked by next
+    private final AtomicReference<Timeout<?>> scheduled = new AtomicReference<>();
+
+    private final long start;
+
+    private volatile boolean stopping;
+
+    // the following fields are only touched by the timer thread
+    private long tick;
+    private int count;
+
+    /**
+     * Creates and starts a wheel.
+     *
+     * @param tick        The duration of a tick.
+     * @param unit        The unit of the tick.
+     * @param bucketPower The number of buckets is 2 to the power of this.
+     * @param name        The name of the timer thread.
+     */
+    TimingWheel(long tick, TimeUnit unit, int bucketPower, String name) {
+        this.tickNanos = Math.max(1, unit.toNanos(tick));
+        this.buckets = new Timeout<?>[1 << bucketPower];
+        this.mask = buckets.length - 1;
+        this.start = System.nanoTime();
+        final Thread thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedules the timeout. A deadline in the past expires at the next tick.
+     *
+     * @throws RejectedExecutionException if the wheel is stopped and its timer
+     *                                    thread ended.
+     */
+    void schedule(Timeout<?> timeout) {
+        while (true) {
+            final Timeout<?> top = scheduled.get();
+            if (top == TERMINATED) {
+                throw new RejectedExecutionException("The timer is stopped");
+            }
+            timeout.next = top;
+            if (scheduled.compareAndSet(top, timeout)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lets the timer thread end, as soon as no timeout is pending anymore.
+     */
+    void stop() {
+        stopping = true;
+    }
+
+    private void run() {
+        // ends only if no timeout was scheduled meanwhile
+        while (!stopping || count > 0 || !scheduled.compareAndSet(null, TERMINATED)) {
+            final long deadline = start + (tick + 1) * tickNanos;
+            for (long now = System.nanoTime(); now - deadline < 0; now = System.nanoTime()) {
+                LockSupport.parkNanos(this, deadline - now);
+            }
+            tick++;
+            transfer();
+            expire(tick & mask);
+        }
+    }
+
+    private void transfer() {
+        Timeout<?> timeout = scheduled.getAndSet(null);
+        while (timeout != null) {
+            final Timeout<?> following = timeout.next;
+            if (timeout.isCancelled()) {
+                timeout.next = null;
+            } else {
+                // the first tick at or after the deadline, but not in the past
+                final long due = Math.max(tick, Math.ceilDiv(timeout.deadline - start, tickNanos));
+                final int bucket = (int) (due & mask);
+                timeout.next = buckets[bucket];
+                buckets[bucket] = timeout;
+                count++;
+            }
+            timeout = following;
+        }
+    }
+
+    private void expire(long bucket) {
+        final long now = start + tick * tickNanos;
+        Timeout<?> previous = null;
+        Timeout<?> timeout = buckets[(int) bucket];
+        while (timeout != null) {
+            final Timeout<?> following = timeout.next;
+            final boolean cancelled = timeout.isCancelled();
+            if (cancelled || timeout.deadline - now <= 0) {
+                if (previous == null) {
+                    buckets[(int) bucket] = following;
+                } else {
+                    previous.next = following;
+                }
+                timeout.next = null;
+                count--;
+                if (!cancelled) {
+                    fire(timeout);
+                }
+            } else {
+                // due in a later turn of the wheel
+                previous = timeout;
+            }
+            timeout = following;
+        }
+    }
+
+    private static void fire(Timeout<?> timeout) {
+        try {
+            timeout.fire();
+        } catch (Throwable t) {
+            // the timer thread must survive a failing timeout
+            final Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, t);
+        }
+    }
+
+    /**
+     * A timeout for a target. It holds the target until it expires or is
+     * cancelled.
+     *
+     * @param <T> the target type.
+     */
+    abstract static class Timeout<T> {
+
+        // in System.nanoTime()
+        private final long deadline;
+
+        // the next timeout on the stack or in the bucket
+        private Timeout<?> next;
+
+        // null if cancelled or expired
+        private volatile T target;
+
+        Timeout(long deadline, T target) {
+            this.deadline = deadline;
+            this.target = target;
+        }
+
+        /**
+         * Cancels the timeout, if it did not expire yet.
+         */
+        void cancel() {
+            target = null;
+        }
+
+        boolean isCancelled() {
+            return target == null;
+        }
+
+        private void fire() {
+            final T current = target;
+            if (current != null) {
+                target = null;
+                expire(current);
+            }
+        }
+
+        /**
+         * Called in the timer thread at the deadline.
+         *
+         * @param target The target.
+         */
+        abstract void expire(T target);
+    }
+}
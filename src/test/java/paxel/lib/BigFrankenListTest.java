@@ -0,0 +1,78 @@
+package paxel.lib;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BigFrankenListTest {
+
+    @Test
+    public void testInsertAndRemove() {
+        BigFrankenList<Long> list = new BigFrankenList<>(4, 50);
+        ArrayList<Long> comp = new ArrayList<>();
+        Random r = new Random(100);
+
+        for (int i = 0; i < 5_000; i++) {
+            if (comp.isEmpty() || r.nextInt(3) > 0) {
+                int index = r.nextInt(comp.size() + 1);
+                list.add((long) index, (long) i);
+                comp.add(index, (long) i);
+            } else if (r.nextBoolean()) {
+                int index = r.nextInt(comp.size());
+                assertThat(list.remove((long) index), is(comp.remove(index)));
+            } else {
+                int index = r.nextInt(comp.size());
+                assertThat(list.set((long) index, (long) -i), is(comp.set(index, (long) -i)));
+            }
+            assertThat(list.sizeLong(), is((long) comp.size()));
+        }
+        assertThat(list.shardCount(), is(greaterThan(10)));
+        for (int i = 0; i < comp.size(); i++) {
+            assertThat(list.get((long) i), is(comp.get(i)));
+        }
+        List<Long> iterated = new ArrayList<>();
+        list.forEach(iterated::add);
+        assertThat(iterated, is(comp));
+
+        list.clear();
+        assertThat(list.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testWindow() {
+        BigFrankenList<Long> list = new BigFrankenList<>(4, 50);
+        ArrayList<Long> comp = new ArrayList<>();
+        for (long i = 0; i < 1_000; i++) {
+            list.add(i);
+            comp.add(i);
+        }
+
+        List<Long> window = list.window(400, 100);
+        assertThat(window, is(comp.subList(400, 500)));
+        window.add(0, -1L);
+        window.remove(50);
+        window.set(10, -10L);
+        List<Long> compWindow = comp.subList(400, 500);
+        compWindow.add(0, -1L);
+        compWindow.remove(50);
+        compWindow.set(10, -10L);
+        assertThat(window, is(compWindow));
+        for (int i = 0; i < comp.size(); i++) {
+            assertThat(list.get((long) i), is(comp.get(i)));
+        }
+
+        list.add(5L);
+        try {
+            window.get(0);
+            throw new AssertionError("The window should have failed");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+}
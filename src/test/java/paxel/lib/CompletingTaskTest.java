@@ -0,0 +1,107 @@
+package paxel.lib;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+public class CompletingTaskTest {
+
+    @Test
+    public void testRunsAtMostOnce() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CompletingTask<Integer> task = CompletingTask.of(calls::incrementAndGet);
+        task.run();
+        task.run();
+        assertThat(calls.get(), is(1));
+        assertThat(task.get(), is(1));
+
+        AtomicInteger runs = new AtomicInteger();
+        CompletingTask<String> runnable = CompletingTask.of((Runnable) runs::incrementAndGet, "done");
+        runnable.run();
+        runnable.run();
+        assertThat(runs.get(), is(1));
+        assertThat(runnable.get(), is("done"));
+    }
+
+    @Test
+    public void testResultIsFixed() throws Exception {
+        CompletingTask<String> task = CompletingTask.of(() -> "first");
+        task.run();
+        assertThat(task.complete("second"), is(false));
+        assertThat(task.completeExceptionally(new IllegalStateException()), is(false));
+        assertThat(task.cancel(true), is(false));
+        assertThat(task.get(), is("first"));
+
+        CompletingTask<String> failing = CompletingTask.of(() -> {
+            throw new IllegalStateException("failed");
+        });
+        failing.run();
+        assertThat(failing.complete("late"), is(false));
+        try {
+            failing.get();
+            fail("the task failed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("failed"));
+        }
+    }
+
+    @Test
+    public void testDoneBeforeRunIsNotCalled() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletingTask<Integer> completed = CompletingTask.of(calls::incrementAndGet);
+        completed.complete(-1);
+        completed.run();
+        assertThat(completed.get(), is(-1));
+
+        CompletingTask<Integer> cancelled = CompletingTask.of(calls::incrementAndGet);
+        assertThat(cancelled.cancel(false), is(true));
+        cancelled.run();
+        assertThat(cancelled.isCancelled(), is(true));
+
+        CompletingTask<Integer> aborted = CompletingTask.of(calls::incrementAndGet);
+        assertThat(aborted.abort(new IllegalStateException("rejected")), is(true));
+        aborted.run();
+        assertThat(aborted.isCompletedExceptionally(), is(true));
+
+        assertThat(calls.get(), is(0));
+    }
+
+    @Test
+    public void testCancelInterruptsRunner() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        AtomicBoolean interruptLeft = new AtomicBoolean();
+        CompletingTask<String> task = CompletingTask.of(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            return "ignored";
+        });
+        Thread runner = new Thread(() -> {
+            task.run();
+            // the interrupt of the cancel must not hit the next task of the thread
+            interruptLeft.set(Thread.currentThread().isInterrupted());
+        });
+        runner.start();
+        started.await();
+
+        assertThat(task.cancel(true), is(true));
+        runner.join(TimeUnit.SECONDS.toMillis(10));
+        assertThat(runner.isAlive(), is(false));
+        assertThat(interrupted.get(), is(true));
+        assertThat(interruptLeft.get(), is(false));
+        assertThat(task.isCancelled(), is(true));
+    }
+}
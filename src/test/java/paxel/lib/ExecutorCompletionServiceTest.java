@@ -3,11 +3,25 @@ package paxel.lib;
 import org.hamcrest.core.IsNull;
 import org.junit.Test;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
 
 public class ExecutorCompletionServiceTest {
 
@@ -66,4 +80,447 @@ public class ExecutorCompletionServiceTest {
             return "Bumm";
         });
     }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        ExecutorCompletionService completionService = ExecutorCompletionService.virtualThreads();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        // far more blocking tasks than platform threads
+        for (int i = 0; i < 10_000; i++) {
+            final int value = i;
+            futures.add(completionService.submit(() -> {
+                Thread.sleep(10);
+                return value;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        assertThat(futures.get(9_999).join(), is(9_999));
+        completionService.shutdown();
+    }
+
+    @Test
+    public void testScope() throws Exception {
+        ExecutorCompletionService completionService = ExecutorCompletionService.virtualThreads();
+        try (TaskScope scope = completionService.scope()) {
+            CompletableFuture<String> a = scope.fork(() -> "a");
+            CompletableFuture<Integer> b = scope.fork(() -> {
+                Thread.sleep(20);
+                return 2;
+            });
+            scope.join();
+            assertThat(a.join(), is("a"));
+            assertThat(b.join(), is(2));
+        }
+        completionService.shutdown();
+    }
+
+    @Test
+    public void testScopeFailureCancelsSiblings() throws Exception {
+        ExecutorCompletionService completionService = ExecutorCompletionService.virtualThreads();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> sibling;
+        try (TaskScope scope = completionService.scope()) {
+            sibling = scope.fork(() -> {
+                started.countDown();
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                    throw e;
+                }
+                return "never";
+            });
+            started.await();
+            scope.fork(() -> {
+                throw new IllegalArgumentException("Bumm");
+            });
+            try {
+                scope.join();
+                fail("a task failed");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause().getMessage(), is("Bumm"));
+            }
+            // forked after the failure
+            assertThat(scope.fork(() -> "late").isCancelled(), is(true));
+        }
+        // close waited for the interrupted sibling
+        assertThat(interrupted.get(), is(true));
+        assertThat(sibling.isCancelled(), is(true));
+        completionService.shutdown();
+    }
+
+    @Test
+    public void testScopeClose() throws InterruptedException {
+        // a single thread: the second task is still queued when the scope is closed
+        ExecutorCompletionService completionService = new ExecutorCompletionService(Executors.newFixedThreadPool(1));
+        AtomicBoolean ran = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> running;
+        CompletableFuture<String> queued;
+        TaskScope scope = completionService.scope();
+        running = scope.fork(() -> {
+            started.countDown();
+            Thread.sleep(60_000);
+            return "never";
+        });
+        queued = scope.fork(() -> {
+            ran.set(true);
+            return "never";
+        });
+        started.await();
+        scope.close();
+        assertThat(running.isCancelled(), is(true));
+        assertThat(queued.isCancelled(), is(true));
+        try {
+            scope.fork(() -> "closed");
+            fail("the scope is closed");
+        } catch (IllegalStateException e) {
+            assertThat(e, instanceOf(IllegalStateException.class));
+        }
+        completionService.shutdown();
+        assertThat(ran.get(), is(false));
+    }
+
+    @Test
+    public void testSubmitAll() throws Exception {
+        ExecutorCompletionService completionService = new ExecutorCompletionService(Executors.newFixedThreadPool(4));
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            final int value = i;
+            tasks.add(() -> value * 2);
+        }
+        List<Integer> results = completionService.submitAll(tasks).get(10, TimeUnit.SECONDS);
+        assertThat(results.size(), is(10_000));
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i), is(i * 2));
+        }
+        assertThat(completionService.submitAll(tasks, 1).get(10, TimeUnit.SECONDS), is(results));
+        assertThat(completionService.submitAll(List.<Callable<Integer>>of()).get(), is(List.of()));
+
+        // the first failure fails the batch, the rest is skipped
+        AtomicInteger called = new AtomicInteger();
+        List<Callable<Integer>> failing = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            final int value = i;
+            failing.add(() -> {
+                called.incrementAndGet();
+                if (value == 10) {
+                    throw new IllegalArgumentException("Bumm");
+                }
+                return value;
+            });
+        }
+        try {
+            completionService.submitAll(failing, 1_000).get(10, TimeUnit.SECONDS);
+            fail("a task failed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("Bumm"));
+        }
+        assertThat(called.get(), is(11));
+        completionService.shutdown();
+    }
+
+    @Test
+    public void testSubmitAny() throws Exception {
+        ExecutorCompletionService completionService = new ExecutorCompletionService(Executors.newFixedThreadPool(1));
+        AtomicInteger called = new AtomicInteger();
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final int value = i;
+            tasks.add(() -> {
+                called.incrementAndGet();
+                if (value < 3) {
+                    throw new IllegalArgumentException("Bumm " + value);
+                }
+                return "found " + value;
+            });
+        }
+        assertThat(completionService.submitAny(tasks, 10).get(10, TimeUnit.SECONDS), is("found 3"));
+        // wait until the single thread is idle again
+        completionService.submit(() -> null).get();
+        assertThat(called.get(), is(4));
+
+        try {
+            completionService.submitAny(tasks.subList(0, 3)).get(10, TimeUnit.SECONDS);
+            fail("all tasks failed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("Bumm 2"));
+        }
+        completionService.shutdown();
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        ExecutorCompletionService completionService = new ExecutorCompletionService(Executors.newFixedThreadPool(4), 2);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = completionService.submit(() -> {
+            release.await();
+            return "first";
+        });
+        CompletableFuture<String> second = completionService.submit(() -> {
+            release.await();
+            throw new IllegalStateException("Bumm");
+        });
+        assertThat(completionService.inFlight(), is(2));
+
+        // no permit left
+        Result<CompletableFuture<String>, RejectedExecutionException> rejected = completionService.trySubmit(() -> "third");
+        assertThat(rejected.hasFailed(), is(true));
+
+        // a blocked producer
+        AtomicBoolean submitted = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            completionService.submit(() -> "fourth");
+            submitted.set(true);
+        });
+        producer.start();
+        while (completionService.queued() == 0) {
+            Thread.sleep(1);
+        }
+        assertThat(submitted.get(), is(false));
+
+        // success and failure give their permits back
+        release.countDown();
+        producer.join(10_000);
+        assertThat(submitted.get(), is(true));
+        assertThat(first.get(10, TimeUnit.SECONDS), is("first"));
+        try {
+            second.get(10, TimeUnit.SECONDS);
+            fail("the task failed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("Bumm"));
+        }
+        Result<CompletableFuture<String>, RejectedExecutionException> accepted = completionService.trySubmit(() -> "fifth");
+        assertThat(accepted.isSuccess(), is(true));
+        assertThat(accepted.value().get(10, TimeUnit.SECONDS), is("fifth"));
+        while (completionService.inFlight() > 0) {
+            Thread.sleep(1);
+        }
+        assertThat(completionService.queued(), is(0));
+        completionService.shutdown();
+    }
+
+    @Test
+    public void testSubmitAsync() throws Exception {
+        ExecutorCompletionService completionService = new ExecutorCompletionService(Executors.newFixedThreadPool(1), 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> blocking = completionService.submit(() -> {
+            release.await();
+            return "blocking";
+        });
+        List<String> order = new ArrayList<>();
+        CompletableFuture<CompletableFuture<String>> a = completionService.submitAsync(() -> {
+            order.add("a");
+            return "a";
+        });
+        AtomicBoolean called = new AtomicBoolean();
+        CompletableFuture<CompletableFuture<String>> withdrawn = completionService.submitAsync(() -> {
+            called.set(true);
+            return "withdrawn";
+        });
+        CompletableFuture<CompletableFuture<String>> b = completionService.submitAsync(() -> {
+            order.add("b");
+            return "b";
+        });
+        assertThat(a.isDone(), is(false));
+        assertThat(completionService.queued(), is(3));
+
+        withdrawn.cancel(false);
+        assertThat(completionService.queued(), is(2));
+
+        release.countDown();
+        assertThat(blocking.get(10, TimeUnit.SECONDS), is("blocking"));
+        assertThat(a.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS), is("a"));
+        assertThat(b.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS), is("b"));
+        assertThat(order, is(List.of("a", "b")));
+        assertThat(called.get(), is(false));
+        completionService.shutdown();
+    }
+
+    @Test
+    public void testKeyed() throws Exception {
+        ExecutorCompletionService completionService = new ExecutorCompletionService(Executors.newFixedThreadPool(4));
+        KeyedExecutor<Integer> keyed = completionService.keyed(8);
+        // not synchronized: the tasks of a key never run at the same time
+        List<List<Integer>> seen = new ArrayList<>();
+        for (int key = 0; key < 100; key++) {
+            seen.add(new ArrayList<>());
+        }
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            for (int key = 0; key < 100; key++) {
+                final List<Integer> values = seen.get(key);
+                final int value = i;
+                futures.add(keyed.submit(key, () -> values.add(value)));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        for (List<Integer> values : seen) {
+            assertThat(values.size(), is(1_000));
+            for (int i = 0; i < values.size(); i++) {
+                assertThat(values.get(i), is(i));
+            }
+        }
+
+        // a failure does not stop the key
+        CompletableFuture<Void> failed = keyed.submitExecutable(1, () -> {
+            throw new IllegalStateException("Bumm");
+        });
+        assertThat(keyed.submit(1, () -> "next").get(10, TimeUnit.SECONDS), is("next"));
+        assertThat(failed.isCompletedExceptionally(), is(true));
+
+        // idle keys are gone
+        while (keyed.activeKeys() > 0) {
+            Thread.sleep(1);
+        }
+
+        completionService.shutdown();
+        try {
+            keyed.submit(1, () -> "rejected").get(10, TimeUnit.SECONDS);
+            fail("the executor is shut down");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(RejectedExecutionException.class));
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        ExecutorCompletionService completionService = new ExecutorCompletionService(Executors.newFixedThreadPool(1), 10);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CompletableFuture<String> running = completionService.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+                return "slept";
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw e;
+            }
+        });
+        AtomicBoolean called = new AtomicBoolean();
+        CompletableFuture<String> queued = completionService.submit(() -> {
+            called.set(true);
+            return "queued";
+        });
+        CompletableFuture<String> dependent = completionService.submit(() -> {
+            called.set(true);
+            return "source";
+        }).thenApply(String::toUpperCase);
+        assertThat(completionService.inFlight(), is(3));
+
+        // the queued tasks give their permits back at once
+        assertThat(queued.cancel(false), is(true));
+        assertThat(dependent.cancel(false), is(true));
+        assertThat(completionService.inFlight(), is(1));
+
+        started.await();
+        assertThat(running.cancel(true), is(true));
+        // the thread is free again and not interrupted anymore
+        assertThat(completionService.submit(() -> Thread.currentThread().isInterrupted()).get(10, TimeUnit.SECONDS), is(false));
+        assertThat(interrupted.get(), is(true));
+        assertThat(called.get(), is(false));
+        completionService.shutdown();
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        ExecutorCompletionService completionService = new ExecutorCompletionService(Executors.newFixedThreadPool(1), 10);
+        assertThat(completionService.submit(() -> "in time", 10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS), is("in time"));
+
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = completionService.submit(() -> release.await(10, TimeUnit.SECONDS), 50, TimeUnit.MILLISECONDS);
+        AtomicBoolean called = new AtomicBoolean();
+        CompletableFuture<String> expired = completionService.submit(() -> {
+            called.set(true);
+            return "expired";
+        }, Instant.now().plusMillis(50));
+        try {
+            expired.get(10, TimeUnit.SECONDS);
+            fail("the deadline expired");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+        // the queued task gave its permit back, the running one still holds it
+        assertThat(completionService.inFlight(), is(1));
+        try {
+            running.get(10, TimeUnit.SECONDS);
+            fail("the deadline expired");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+        release.countDown();
+        // the thread is free again, the expired task was skipped
+        completionService.submit(() -> null).get(10, TimeUnit.SECONDS);
+        assertThat(called.get(), is(false));
+        completionService.shutdown();
+    }
+
+    @Test
+    public void testSubmitDelayed() throws Exception {
+        ExecutorCompletionService completionService = new ExecutorCompletionService(Executors.newFixedThreadPool(1), 10);
+        long start = System.nanoTime();
+        CompletableFuture<Long> delayed = completionService.submitDelayed(System::nanoTime, 100, TimeUnit.MILLISECONDS);
+        AtomicBoolean called = new AtomicBoolean();
+        CompletableFuture<String> cancelled = completionService.submitDelayed(() -> {
+            called.set(true);
+            return "cancelled";
+        }, 50, TimeUnit.MILLISECONDS);
+        // delayed tasks hold their permits
+        assertThat(completionService.inFlight(), is(2));
+        cancelled.cancel(false);
+        assertThat(completionService.inFlight(), is(1));
+
+        assertThat(delayed.get(10, TimeUnit.SECONDS) - start >= TimeUnit.MILLISECONDS.toNanos(100), is(true));
+        Thread.sleep(100);
+        assertThat(called.get(), is(false));
+        completionService.shutdown();
+        try {
+            completionService.submitDelayed(() -> "rejected", 1, TimeUnit.MILLISECONDS);
+            fail("the executor is shut down");
+        } catch (RejectedExecutionException e) {
+            assertThat(completionService.inFlight(), is(0));
+        }
+    }
+
+    @Test
+    public void testCancelRacingStartDoesNotInterruptNextTask() throws Exception {
+        ExecutorCompletionService completionService = new ExecutorCompletionService(Executors.newFixedThreadPool(1));
+        KeyedExecutor<String> keyed = completionService.keyed(1_000);
+        CountDownLatch release = new CountDownLatch(1);
+        keyed.submitExecutable("key", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        // completed from outside, but still to be run: cancel(true) keeps returning true
+        List<CompletableFuture<String>> completed = new ArrayList<>();
+        List<CompletableFuture<Boolean>> next = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            CompletableFuture<String> task = keyed.submit("key", () -> "completed");
+            task.completeExceptionally(new CancellationException());
+            completed.add(task);
+            // runs right after it in the same drain batch
+            next.add(keyed.submit("key", () -> Thread.currentThread().isInterrupted()));
+        }
+        AtomicBoolean racing = new AtomicBoolean(true);
+        Thread canceller = new Thread(() -> {
+            while (racing.get()) {
+                for (CompletableFuture<String> task : completed) {
+                    task.cancel(true);
+                }
+            }
+        });
+        canceller.start();
+        release.countDown();
+        for (CompletableFuture<Boolean> future : next) {
+            assertThat(future.get(10, TimeUnit.SECONDS), is(false));
+        }
+        racing.set(false);
+        canceller.join();
+        completionService.shutdown();
+    }
 }
@@ -0,0 +1,193 @@
+package paxel.lib;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+public class FrankenListSorterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSpilledRuns() throws IOException {
+        File spill = folder.newFolder();
+        Random r = new Random(100);
+        List<Long> input = LongStream.range(0, 10_000).map(i -> r.nextInt(50_000)).boxed().collect(Collectors.toList());
+
+        // 100 records per run, 3 runs per merge: several merge passes
+        FrankenList<Long> sorted = new FrankenListSorter<>(FrankenListSorter.Codec.LONG, null)
+                .memoryBudget(100)
+                .weigher(value -> 1)
+                .fanIn(3)
+                .sectionSizeLimit(64)
+                .tempDirectory(spill.toPath())
+                .sort(input.stream());
+
+        List<Long> expected = new ArrayList<>(input);
+        expected.sort(null);
+        assertThat(new ArrayList<>(sorted), is(expected));
+        // the sections are packed
+        assertThat(sorted.sectionCount(), is((10_000 + 63) / 64));
+        // the runs are gone
+        assertThat(spill.list(), is(emptyArray()));
+    }
+
+    @Test
+    public void testInMemory() throws IOException {
+        File spill = folder.newFolder();
+
+        FrankenList<Long> sorted = new FrankenListSorter<>(FrankenListSorter.Codec.LONG, Comparator.reverseOrder())
+                .tempDirectory(spill.toPath())
+                .sort(List.of(3L, 1L, 4L, 1L, 5L, 9L, 2L, 6L).iterator());
+
+        assertThat(new ArrayList<>(sorted), is(List.of(9L, 6L, 5L, 4L, 3L, 2L, 1L, 1L)));
+        assertThat(spill.list(), is(emptyArray()));
+    }
+
+    @Test
+    public void testStable() throws IOException {
+        Random r = new Random(100);
+        List<Item> input = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            input.add(new Item(r.nextInt(20), i));
+        }
+
+        FrankenList<Item> sorted = new FrankenListSorter<>(new ItemCodec(), Comparator.comparingInt(Item::key))
+                .memoryBudget(70)
+                .weigher(value -> 1)
+                .fanIn(4)
+                .tempDirectory(folder.newFolder().toPath())
+                .sort(input.stream());
+
+        List<Item> expected = new ArrayList<>(input);
+        // List.sort is stable
+        expected.sort(Comparator.comparingInt(Item::key));
+        assertThat(new ArrayList<>(sorted), is(expected));
+    }
+
+    @Test
+    public void testLines() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, List.of("pear", "apple", "", "zucchini", "äpfel", "banana"), StandardCharsets.UTF_8);
+
+        FrankenList<String> sorted = new FrankenListSorter<>(FrankenListSorter.Codec.STRING, null)
+                .memoryBudget(2)
+                .weigher(value -> 1)
+                .tempDirectory(folder.newFolder().toPath())
+                .sort(file, StandardCharsets.UTF_8, Function.identity());
+
+        assertThat(new ArrayList<>(sorted), is(List.of("", "apple", "banana", "pear", "zucchini", "äpfel")));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNull() throws IOException {
+        new FrankenListSorter<>(FrankenListSorter.Codec.STRING, null).sort(new ArrayList<>(Arrays.asList("a", null)).iterator());
+    }
+
+    @Test
+    public void testFailingMergeDeletesRuns() throws IOException {
+        File spill = folder.newFolder();
+        // 1000 records are spilled in 10 runs, the merge pass fails while writing
+        FailingCodec codec = new FailingCodec(1_050, 0);
+        FrankenListSorter<Long> sorter = new FrankenListSorter<>(codec, null)
+                .memoryBudget(100)
+                .weigher(value -> 1)
+                .fanIn(3)
+                .tempDirectory(spill.toPath());
+        try {
+            sorter.sort(LongStream.range(0, 1_000).map(i -> 999 - i).boxed());
+            fail("the merge failed");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("Disk full"));
+        }
+        assertThat(codec.writes, is(1_050));
+        assertThat(spill.list(), is(emptyArray()));
+    }
+
+    @Test
+    public void testFailingFinalMergeDeletesRuns() throws IOException {
+        File spill = folder.newFolder();
+        // 1000 records are spilled in 10 runs, the final merge fails while reading
+        FailingCodec codec = new FailingCodec(0, 500);
+        FrankenListSorter<Long> sorter = new FrankenListSorter<>(codec, null)
+                .memoryBudget(100)
+                .weigher(value -> 1)
+                .fanIn(20)
+                .tempDirectory(spill.toPath());
+        try {
+            sorter.sort(LongStream.range(0, 1_000).map(i -> 999 - i).boxed());
+            fail("the merge failed");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("Disk failed"));
+        }
+        assertThat(codec.reads, is(500));
+        assertThat(spill.list(), is(emptyArray()));
+    }
+
+    private record Item(int key, int position) {
+    }
+
+    private static class FailingCodec implements FrankenListSorter.Codec<Long> {
+
+        private final int failWriteAt;
+        private final int failReadAt;
+        private int writes;
+        private int reads;
+
+        private FailingCodec(int failWriteAt, int failReadAt) {
+            this.failWriteAt = failWriteAt;
+            this.failReadAt = failReadAt;
+        }
+
+        @Override
+        public void write(Long value, DataOutput out) throws IOException {
+            if (++writes == failWriteAt) {
+                throw new IOException("Disk full");
+            }
+            out.writeLong(value);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            if (++reads == failReadAt) {
+                throw new IOException("Disk failed");
+            }
+            return in.readLong();
+        }
+    }
+
+    private static class ItemCodec implements FrankenListSorter.Codec<Item> {
+
+        @Override
+        public void write(Item value, DataOutput out) throws IOException {
+            out.writeInt(value.key());
+            out.writeInt(value.position());
+        }
+
+        @Override
+        public Item read(DataInput in) throws IOException {
+            return new Item(in.readInt(), in.readInt());
+        }
+    }
+}
@@ -4,7 +4,10 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Random;
+import java.util.function.Consumer;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -119,4 +122,814 @@ public class FrankenListTest {
         }
     }
 
+    @Test
+    public void testApplyBatch() {
+        FrankenList<Long> fl = new FrankenList<>(50);
+        ArrayList<Long> comp = new ArrayList<>();
+        Random r = new Random(100);
+        for (int i = 0; i < 2_000; i++) {
+            fl.add((long) i);
+            comp.add((long) i);
+        }
+
+        for (int round = 0; round < 20; round++) {
+            List<FrankenList.Edit<Long>> edits = new ArrayList<>();
+            List<Integer> indices = new ArrayList<>();
+            for (int i = 0; i < comp.size(); i++) {
+                indices.add(i);
+            }
+            Collections.shuffle(indices, r);
+            // every original element is changed at most once
+            for (int i = 0; i < 300 && i < indices.size(); i++) {
+                int index = indices.get(i);
+                switch (r.nextInt(3)) {
+                    case 0 -> edits.add(FrankenList.Edit.insert(r.nextInt(comp.size() + 1), (long) -i));
+                    case 1 -> edits.add(FrankenList.Edit.set(index, (long) -i));
+                    default -> edits.add(FrankenList.Edit.remove(index));
+                }
+            }
+
+            fl.applyBatch(edits);
+            comp = applyBatchTheSlowWay(comp, edits);
+            assertThat(fl.size(), is(comp.size()));
+            assertThat(fl, contains(comp.toArray()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApplyBatchRejectsDoubleEdits() {
+        FrankenList<Long> fl = new FrankenList<>();
+        fl.add(1L);
+        fl.applyBatch(List.of(FrankenList.Edit.set(0, 2L), FrankenList.Edit.remove(0)));
+    }
+
+    @Test
+    public void testMergeSorted() {
+        FrankenList<Long> fl = new FrankenList<>(50);
+        ArrayList<Long> comp = new ArrayList<>();
+        Random r = new Random(100);
+
+        for (int round = 0; round < 20; round++) {
+            List<Long> values = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                values.add((long) r.nextInt(10_000));
+            }
+            fl.mergeSorted(values, null);
+            comp.addAll(values);
+            Collections.sort(comp);
+            assertThat(fl, contains(comp.toArray()));
+        }
+    }
+
+    private static <T> ArrayList<T> applyBatchTheSlowWay(List<T> original, List<FrankenList.Edit<T>> edits) {
+        ArrayList<T> result = new ArrayList<>();
+        for (int i = 0; i <= original.size(); i++) {
+            T value = i < original.size() ? original.get(i) : null;
+            boolean keep = i < original.size();
+            for (FrankenList.Edit<T> edit : edits) {
+                if (edit.index() == i && edit.kind() == FrankenList.Edit.Kind.INSERT) {
+                    result.add(edit.value());
+                }
+            }
+            for (FrankenList.Edit<T> edit : edits) {
+                if (edit.index() == i && edit.kind() == FrankenList.Edit.Kind.SET) {
+                    value = edit.value();
+                } else if (edit.index() == i && edit.kind() == FrankenList.Edit.Kind.REMOVE) {
+                    keep = false;
+                }
+            }
+            if (keep) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testIndex() {
+        FrankenList<Long> fl = new FrankenList<>(20);
+        ArrayList<Long> comp = new ArrayList<>();
+        Random r = new Random(100);
+        for (int i = 0; i < 500; i++) {
+            long value = r.nextInt(200);
+            fl.add(value);
+            comp.add(value);
+        }
+        fl.enableIndex();
+
+        for (int i = 0; i < 2_000; i++) {
+            long value = r.nextInt(200);
+            switch (r.nextInt(4)) {
+                case 0 -> {
+                    int index = r.nextInt(comp.size() + 1);
+                    fl.add(index, value);
+                    comp.add(index, value);
+                }
+                case 1 -> assertThat(fl.remove((Object) value), is(comp.remove((Object) value)));
+                case 2 -> {
+                    int index = r.nextInt(comp.size());
+                    assertThat(fl.set(index, value), is(comp.set(index, value)));
+                }
+                default -> {
+                    fl.applyBatch(List.of(FrankenList.Edit.insert(0, value), FrankenList.Edit.remove(comp.size() - 1)));
+                    comp.add(0, value);
+                    comp.removeLast();
+                }
+            }
+            long searched = r.nextInt(200);
+            assertThat(fl.indexOf(searched), is(comp.indexOf(searched)));
+            assertThat(fl.lastIndexOf(searched), is(comp.lastIndexOf(searched)));
+            assertThat(fl.contains(searched), is(comp.contains(searched)));
+        }
+        assertThat(fl, contains(comp.toArray()));
+    }
+
+    @Test
+    public void testSummaries() {
+        FrankenList<Long> fl = new FrankenList<>(20);
+        ArrayList<Long> comp = new ArrayList<>();
+        Random r = new Random(100);
+        // clustered: the values grow with the index
+        for (int i = 0; i < 1_000; i++) {
+            long value = i * 10L + r.nextInt(30);
+            fl.add(value);
+            comp.add(value);
+        }
+        fl.enableSummaries();
+        assertThat(fl.isSummarized(), is(true));
+
+        for (int i = 0; i < 2_000; i++) {
+            long value = r.nextInt(10_000);
+            switch (r.nextInt(4)) {
+                case 0 -> {
+                    int index = r.nextInt(comp.size() + 1);
+                    fl.add(index, value);
+                    comp.add(index, value);
+                }
+                case 1 -> assertThat(fl.remove((Object) value), is(comp.remove((Object) value)));
+                case 2 -> {
+                    int index = r.nextInt(comp.size());
+                    assertThat(fl.set(index, value), is(comp.set(index, value)));
+                }
+                default -> {
+                    int index = r.nextInt(comp.size());
+                    assertThat(fl.remove(index), is(comp.remove(index)));
+                }
+            }
+            long searched = r.nextInt(10_000);
+            assertThat(fl.indexOf(searched), is(comp.indexOf(searched)));
+            assertThat(fl.lastIndexOf(searched), is(comp.lastIndexOf(searched)));
+            assertThat(fl.contains(searched), is(comp.contains(searched)));
+
+            long min = r.nextInt(10_000);
+            long max = min + r.nextInt(500);
+            List<Long> expected = comp.stream().filter(v -> v >= min && v <= max).toList();
+            assertThat(new ArrayList<>(fl.filterRange(min, max)), is(expected));
+        }
+        fl.add(null);
+        assertThat(fl.contains(null), is(true));
+        assertThat(fl.contains("foreign"), is(false));
+
+        fl.disableSummaries();
+        assertThat(fl.isSummarized(), is(false));
+        assertThat(new ArrayList<>(fl.filterRange(0L, 100L)), is(comp.stream().filter(v -> v <= 100).toList()));
+    }
+
+    @Test
+    public void testSparse() {
+        FrankenList<Long> fl = new FrankenList<>(100);
+        ArrayList<Long> comp = new ArrayList<>();
+        Random r = new Random(100);
+        // 90% placeholders
+        for (int i = 0; i < 5_000; i++) {
+            Long value = r.nextInt(10) == 0 ? (long) i : null;
+            fl.add(value);
+            comp.add(value);
+        }
+        assertThat(fl.sparseSectionCount(), is(fl.sectionCount()));
+
+        for (int i = 0; i < 5_000; i++) {
+            Long value = r.nextInt(10) == 0 ? (long) r.nextInt(1_000) : null;
+            switch (r.nextInt(5)) {
+                case 0 -> {
+                    int index = r.nextInt(comp.size() + 1);
+                    fl.add(index, value);
+                    comp.add(index, value);
+                }
+                case 1 -> {
+                    int index = r.nextInt(comp.size());
+                    assertThat(fl.set(index, value), is(comp.set(index, value)));
+                }
+                case 2 -> {
+                    int index = r.nextInt(comp.size());
+                    assertThat(fl.remove(index), is(comp.remove(index)));
+                }
+                case 3 -> {
+                    int index = r.nextInt(comp.size());
+                    fl.applyBatch(List.of(FrankenList.Edit.insert(index, value), FrankenList.Edit.remove(index)));
+                    comp.set(index, value);
+                }
+                default -> {
+                    int index = r.nextInt(comp.size());
+                    fl.appendAll(fl.splitAt(index));
+                }
+            }
+            assertThat(fl.size(), is(comp.size()));
+        }
+        assertThat(new ArrayList<>(fl), is(comp));
+        assertThat(fl.indexOf(null), is(comp.indexOf(null)));
+        assertThat(fl.lastIndexOf(null), is(comp.lastIndexOf(null)));
+        for (int i = 0; i < comp.size(); i += 7) {
+            assertThat(fl.get(i), is(comp.get(i)));
+        }
+        assertThat(fl.sparseSectionCount(), is(greaterThan(0)));
+
+        // filled up, the sections turn dense again
+        for (int i = 0; i < comp.size(); i++) {
+            fl.set(i, (long) i);
+            comp.set(i, (long) i);
+        }
+        assertThat(new ArrayList<>(fl), is(comp));
+        assertThat(fl.sparseSectionCount(), is(0));
+
+        // removing nulls shrinks the list
+        fl.add(3, null);
+        assertThat(fl.remove(3), is(nullValue()));
+        assertThat(fl.size(), is(comp.size()));
+    }
+
+    @Test
+    public void testGetAll() {
+        FrankenList<Long> fl = new FrankenList<>(20);
+        ArrayList<Long> comp = new ArrayList<>();
+        Random r = new Random(100);
+        for (int i = 0; i < 1_000; i++) {
+            long value = r.nextInt(10_000);
+            int index = r.nextInt(comp.size() + 1);
+            fl.add(index, value);
+            comp.add(index, value);
+        }
+
+        // unsorted, with duplicates
+        int[] indices = new int[500];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = r.nextInt(comp.size());
+        }
+        indices[7] = indices[3];
+        indices[8] = 0;
+        indices[9] = comp.size() - 1;
+        Long[] out = new Long[indices.length];
+        fl.getAll(indices, out);
+        for (int i = 0; i < indices.length; i++) {
+            assertThat(out[i], is(comp.get(indices[i])));
+        }
+
+        Long[] untouched = new Long[2];
+        try {
+            fl.getAll(new int[]{1, comp.size()}, untouched);
+            fail("index out of range");
+        } catch (IndexOutOfBoundsException e) {
+            assertThat(untouched[0], is(nullValue()));
+        }
+        try {
+            fl.getAll(new int[]{1, 2}, new Long[1]);
+            fail("output too small");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAggregation() {
+        FrankenList<Long> fl = new FrankenList<>(20);
+        ArrayList<Long> comp = new ArrayList<>();
+        Random r = new Random(100);
+        for (int i = 0; i < 1_000; i++) {
+            fl.add((long) i);
+            comp.add((long) i);
+        }
+        // not commutative: the order of the combined sections matters
+        fl.enableAggregation(FrankenList.Monoid.<Long, String>of("", v -> v + ",", String::concat));
+        assertThat(fl.isAggregated(), is(true));
+
+        for (int i = 0; i < 2_000; i++) {
+            long value = r.nextInt(10_000);
+            switch (r.nextInt(4)) {
+                case 0 -> {
+                    int index = r.nextInt(comp.size() + 1);
+                    fl.add(index, value);
+                    comp.add(index, value);
+                }
+                case 1 -> {
+                    fl.add(value);
+                    comp.add(value);
+                }
+                case 2 -> {
+                    int index = r.nextInt(comp.size());
+                    assertThat(fl.set(index, value), is(comp.set(index, value)));
+                }
+                default -> {
+                    int index = r.nextInt(comp.size());
+                    assertThat(fl.remove(index), is(comp.remove(index)));
+                }
+            }
+            int from = r.nextInt(comp.size() + 1);
+            int to = from + r.nextInt(comp.size() - from + 1);
+            StringBuilder expected = new StringBuilder();
+            comp.subList(from, to).forEach(v -> expected.append(v).append(','));
+            assertThat(fl.aggregate(from, to), is(expected.toString()));
+        }
+
+        fl.enableAggregation(FrankenList.Monoid.<Long>summingLong(v -> v));
+        assertThat(fl.aggregate(0, comp.size()), is(comp.stream().mapToLong(v -> v).sum()));
+        assertThat(fl.aggregate(5, 5), is(0L));
+        fl.enableAggregation(FrankenList.Monoid.<Long>maxBy(Comparator.naturalOrder()));
+        assertThat(fl.aggregate(10, 500), is(comp.subList(10, 500).stream().max(Comparator.naturalOrder()).get()));
+
+        fl.disableAggregation();
+        assertThat(fl.isAggregated(), is(false));
+        try {
+            fl.aggregate(0, 1);
+            fail("aggregation is disabled");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSplitAndSplice() {
+        FrankenList<Long> fl = new FrankenList<>(10);
+        ArrayList<Long> comp = new ArrayList<>();
+        long next = 0;
+        for (; next < 300; next++) {
+            fl.add(next);
+            comp.add(next);
+        }
+        fl.enableIndex();
+        fl.enableCompression(50, 2);
+        FrankenList.Handle handle = fl.handle(150);
+
+        Random r = new Random(100);
+        for (int i = 0; i < 500; i++) {
+            switch (r.nextInt(3)) {
+                case 0 -> {
+                    int index = r.nextInt(comp.size() + 1);
+                    FrankenList<Long> tail = fl.splitAt(index);
+                    assertThat(new ArrayList<>(tail), is(comp.subList(index, comp.size())));
+                    comp.subList(index, comp.size()).clear();
+                    assertThat(new ArrayList<>(fl), is(comp));
+                    // glue it back
+                    List<Long> values = new ArrayList<>(tail);
+                    fl.appendAll(tail);
+                    assertThat(tail.isEmpty(), is(true));
+                    comp.addAll(values);
+                    assertThat(new ArrayList<>(fl), is(comp));
+                }
+                case 1 -> {
+                    FrankenList<Long> other = new FrankenList<>(7);
+                    int count = r.nextInt(40);
+                    for (int j = 0; j < count; j++) {
+                        other.add(next);
+                        comp.add(next++);
+                    }
+                    fl.appendAll(other);
+                    assertThat(other.size(), is(0));
+                }
+                default -> {
+                    int index = r.nextInt(comp.size() + 1);
+                    int count = r.nextInt(Math.min(30, comp.size() - index) + 1);
+                    FrankenList<Long> other = new FrankenList<>(10);
+                    List<Long> inserted = new ArrayList<>();
+                    for (int j = r.nextInt(30); j > 0; j--) {
+                        other.add(next);
+                        inserted.add(next++);
+                    }
+                    FrankenList<Long> removed = fl.splice(index, count, other);
+                    List<Long> range = comp.subList(index, index + count);
+                    assertThat(new ArrayList<>(removed), is(range));
+                    if (range.contains(150L)) {
+                        // the handle followed its element into the removed list
+                        assertThat(removed.get(handle), is(150L));
+                        removed.release(handle);
+                    }
+                    range.clear();
+                    comp.addAll(index, inserted);
+                }
+            }
+            assertThat(new ArrayList<>(fl), is(comp));
+            long searched = r.nextInt((int) next);
+            assertThat(fl.indexOf(searched), is(comp.indexOf(searched)));
+            if (handle.isValid()) {
+                assertThat(handle.index(), is(comp.indexOf(150L)));
+            }
+        }
+        assertThat(handle.isValid(), is(false));
+    }
+
+    @Test
+    public void testManySections() {
+        // thousands of tiny sections, spread over several groups of the root
+        FrankenList<Long> fl = new FrankenList<>(2);
+        ArrayList<Long> comp = new ArrayList<>();
+        long next = 0;
+        for (; next < 6_000; next++) {
+            fl.add(next);
+            comp.add(next);
+        }
+        FrankenList.Handle handle = fl.handle(4_000);
+        Random r = new Random(100);
+        for (int i = 0; i < 3_000; i++) {
+            switch (r.nextInt(5)) {
+                case 0, 1 -> {
+                    int index = r.nextInt(comp.size() + 1);
+                    fl.add(index, next);
+                    comp.add(index, next++);
+                }
+                case 2 -> {
+                    int index = r.nextInt(comp.size());
+                    assertThat(fl.remove(index), is(comp.remove(index)));
+                }
+                case 3 -> {
+                    int index = r.nextInt(comp.size());
+                    int removeAt = r.nextInt(comp.size());
+                    fl.applyBatch(List.of(FrankenList.Edit.insert(index, next), FrankenList.Edit.remove(removeAt)));
+                    // the batch indices refer to the list before the batch
+                    comp.add(index, next++);
+                    comp.remove(removeAt < index ? removeAt : removeAt + 1);
+                    assertThat(new ArrayList<>(fl), is(comp));
+                }
+                default -> {
+                    int index = r.nextInt(comp.size() + 1);
+                    int count = r.nextInt(Math.min(2_000, comp.size() - index) + 1);
+                    FrankenList<Long> removed = fl.splice(index, count, new FrankenList<>());
+                    List<Long> range = comp.subList(index, index + count);
+                    assertThat(new ArrayList<>(removed), is(range));
+                    List<Long> values = new ArrayList<>(range);
+                    range.clear();
+                    // and back again
+                    fl.splice(index, 0, removed);
+                    comp.addAll(index, values);
+                    assertThat(new ArrayList<>(fl), is(comp));
+                }
+            }
+            int index = r.nextInt(comp.size());
+            assertThat(fl.get(index), is(comp.get(index)));
+            if (handle.isValid()) {
+                assertThat(handle.index(), is(comp.indexOf(4_000L)));
+            }
+        }
+        assertThat(fl, contains(comp.toArray()));
+        fl.clear();
+        assertThat(fl.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testSplitPolicies() {
+        for (FrankenList.SplitPolicy policy : List.of(FrankenList.SplitPolicy.MIDPOINT,
+                FrankenList.SplitPolicy.AT_INSERT, FrankenList.SplitPolicy.THREE_WAY)) {
+            FrankenList<Long> fl = new FrankenList<>(10, policy);
+            ArrayList<Long> comp = new ArrayList<>();
+            fl.add(-1L);
+            comp.add(-1L);
+            FrankenList.Handle handle = fl.handle(0);
+            Random r = new Random(100);
+            for (long i = 0; i < 2_000; i++) {
+                // ascending in front of the last element, with some random inserts
+                int index = r.nextInt(4) == 0 ? r.nextInt(comp.size() + 1) : comp.size() - 1;
+                fl.add(index, i);
+                comp.add(index, i);
+            }
+            assertThat(fl, contains(comp.toArray()));
+            assertThat(handle.index(), is(comp.indexOf(-1L)));
+        }
+
+        // ascending inserts leave full sections with AT_INSERT
+        FrankenList<Long> midpoint = new FrankenList<>(10, FrankenList.SplitPolicy.MIDPOINT);
+        FrankenList<Long> atInsert = new FrankenList<>(10, FrankenList.SplitPolicy.AT_INSERT);
+        midpoint.add(Long.MAX_VALUE);
+        atInsert.add(Long.MAX_VALUE);
+        for (long i = 0; i < 1_000; i++) {
+            midpoint.add((int) i, i);
+            atInsert.add((int) i, i);
+        }
+        assertThat(atInsert.sectionCount(), is(lessThan(midpoint.sectionCount() * 2 / 3)));
+
+        FrankenList<Long> broken = new FrankenList<>(2, (size, inserted) -> new int[]{0});
+        broken.add(1L);
+        broken.add(2L);
+        try {
+            broken.add(0, 0L);
+            fail("The invalid cut should be rejected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCompression() {
+        FrankenList<Long> fl = new FrankenList<>(20);
+        ArrayList<Long> comp = new ArrayList<>();
+        Random r = new Random(100);
+        long current = 0;
+        for (int i = 0; i < 1_000; i++) {
+            current += r.nextInt(1_000);
+            fl.add(current);
+            comp.add(current);
+        }
+        fl.enableCompression(50, 2);
+        FrankenList.CompressionStatistics statistics = fl.compressionStatistics();
+        assertThat(statistics.packedElements(), is(1_000L));
+        assertThat(statistics.bytesPerPackedElement(), is(lessThan(2.0)));
+
+        for (int i = 0; i < 2_000; i++) {
+            long value = r.nextInt(500_000);
+            switch (r.nextInt(5)) {
+                case 0 -> {
+                    fl.mergeSorted(List.of(value), null);
+                    comp.add(value);
+                    Collections.sort(comp);
+                }
+                case 1 -> {
+                    int index = r.nextInt(comp.size());
+                    assertThat(fl.remove(index), is(comp.remove(index)));
+                }
+                case 2 -> fl.applyBatch(List.of(FrankenList.Edit.set(0, comp.getFirst())));
+                default -> {
+                    int index = r.nextInt(comp.size());
+                    assertThat(fl.get(index), is(comp.get(index)));
+                }
+            }
+        }
+        assertThat(fl, contains(comp.toArray()));
+        assertThat(fl.compressionStatistics().packedSections(), is(greaterThan(0)));
+        assertThat(fl.compressionStatistics().hits(), is(greaterThan(0L)));
+
+        // only the first section is modified, all others cool down and are packed
+        for (int i = 0; i < 100; i++) {
+            fl.set(0, comp.getFirst());
+        }
+        int packed = fl.compressionStatistics().packedSections();
+        // a modified section is unpacked, and packed again when it cooled down
+        fl.set(500, comp.get(500));
+        assertThat(fl.compressionStatistics().packedSections(), is(packed - 1));
+        for (int i = 0; i < 100; i++) {
+            fl.set(0, comp.getFirst());
+        }
+        assertThat(fl.compressionStatistics().packedSections(), is(packed));
+        assertThat(fl, contains(comp.toArray()));
+
+        fl.disableCompression();
+        assertThat(fl.compressionStatistics(), is(nullValue()));
+        assertThat(fl, contains(comp.toArray()));
+    }
+
+    @Test
+    public void testChangeFeed() {
+        FrankenList<Long> fl = new FrankenList<>(20);
+        for (int i = 0; i < 500; i++) {
+            fl.add((long) i);
+        }
+        // the view is maintained from the changes only
+        ArrayList<Long> view = new ArrayList<>(fl);
+        List<Integer> deliveries = new ArrayList<>();
+        Consumer<List<FrankenList.Change<Long>>> subscriber = changes -> {
+            deliveries.add(changes.size());
+            for (FrankenList.Change<Long> change : changes) {
+                switch (change.type()) {
+                    case INSERT -> view.addAll(change.index(), change.values());
+                    case REMOVE -> view.subList(change.index(), change.index() + change.count()).clear();
+                    case SET -> {
+                        for (int i = 0; i < change.count(); i++) {
+                            view.set(change.index() + i, change.values().get(i));
+                        }
+                    }
+                }
+            }
+        };
+        fl.subscribe(50, subscriber);
+
+        Random r = new Random(100);
+        for (int i = 0; i < 2_000; i++) {
+            switch (r.nextInt(6)) {
+                case 0 -> fl.add(r.nextInt(fl.size() + 1), (long) i);
+                case 1 -> fl.remove(r.nextInt(fl.size()));
+                case 2 -> fl.set(r.nextInt(fl.size()), (long) i);
+                case 3 -> fl.mergeSorted(List.of((long) i, (long) -i), null);
+                case 4 -> fl.applyBatch(List.of(FrankenList.Edit.insert(r.nextInt(fl.size() + 1), (long) i),
+                        FrankenList.Edit.remove(r.nextInt(fl.size())),
+                        FrankenList.Edit.insert(fl.size(), (long) -i)));
+                default -> fl.remove((Object) (long) r.nextInt(2_000));
+            }
+        }
+        fl.publishChanges();
+        assertThat(view, is(new ArrayList<>(fl)));
+
+        // consecutive appends are coalesced into a single change
+        deliveries.clear();
+        for (int i = 0; i < 50; i++) {
+            fl.add((long) i);
+        }
+        assertThat(deliveries, contains(1));
+
+        // a sort is the remove of the old order and a single insert of the new one
+        deliveries.clear();
+        fl.sort(null);
+        fl.publishChanges();
+        assertThat(deliveries, contains(2));
+        assertThat(view, is(new ArrayList<>(fl)));
+
+        // a batch counts one modification per touched section, not per edit
+        deliveries.clear();
+        List<FrankenList.Edit<Long>> edits = new ArrayList<>();
+        for (int i = 0; i < 200; i += 2) {
+            edits.add(FrankenList.Edit.set(i, (long) -i));
+        }
+        fl.applyBatch(edits);
+        fl.publishChanges();
+        assertThat(deliveries, contains(100));
+        assertThat(view, is(new ArrayList<>(fl)));
+
+        fl.clear();
+        assertThat(fl.unsubscribe(subscriber), is(true));
+        assertThat(view.isEmpty(), is(true));
+        assertThat(fl.unsubscribe(subscriber), is(false));
+    }
+
+    @Test
+    public void testFreezeAndThaw() {
+        FrankenList<Long> fl = new FrankenList<>(20);
+        for (int i = 0; i < 1_000; i++) {
+            fl.addFirst((long) i);
+        }
+
+        CompactList<Long> frozen = fl.freeze();
+        assertThat(frozen, is(fl));
+        assertThat(frozen.spliterator().estimateSize(), is(1_000L));
+        assertThat(frozen.stream().mapToLong(Long::longValue).sum(), is(999L * 1_000 / 2));
+        try {
+            frozen.set(0, 1L);
+            fail("frozen lists are immutable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        CompactLongList longs = fl.freezeLongs();
+        assertThat(longs, is(fl));
+        assertThat(longs.getLong(999), is(0L));
+        assertThat(longs.stream().mapToLong(Long::longValue).sum(), is(999L * 1_000 / 2));
+
+        FrankenList<Long> thawed = frozen.thaw();
+        thawed.add(0, -1L);
+        assertThat(thawed.size(), is(1_001));
+        assertThat(thawed.subList(1, 1_001), is(fl));
+        assertThat(new ArrayList<>(longs.thaw()), is(frozen));
+    }
+
+    @Test
+    public void testHandles() {
+        FrankenList<Long> fl = new FrankenList<>(10);
+        ArrayList<Long> comp = new ArrayList<>();
+        for (long i = 0; i < 200; i++) {
+            fl.add(i);
+            comp.add(i);
+        }
+        // every element is unique, so the expected index of a handle is comp.indexOf(element)
+        List<FrankenList.Handle> handles = new ArrayList<>();
+        List<Long> bookmarked = new ArrayList<>();
+        for (int i = 0; i < 200; i += 7) {
+            handles.add(fl.handle(i));
+            bookmarked.add(comp.get(i));
+        }
+
+        Random r = new Random(100);
+        long next = 1_000;
+        for (int i = 0; i < 2_000; i++) {
+            FrankenList.Handle handle = handles.get(r.nextInt(handles.size()));
+            switch (r.nextInt(6)) {
+                case 0 -> {
+                    int index = r.nextInt(comp.size() + 1);
+                    fl.add(index, next);
+                    comp.add(index, next++);
+                }
+                case 1 -> {
+                    int index = r.nextInt(comp.size());
+                    fl.remove(index);
+                    comp.remove(index);
+                }
+                case 2 -> {
+                    if (handle.isValid()) {
+                        comp.add(handle.index() + 1, next);
+                        fl.insertAfter(handle, next++);
+                    }
+                }
+                case 3 -> {
+                    fl.mergeSorted(List.of(next), null);
+                    comp.add(next++);
+                }
+                case 4 -> {
+                    int index = r.nextInt(comp.size());
+                    int removeAt = r.nextInt(comp.size());
+                    fl.applyBatch(List.of(FrankenList.Edit.insert(index, next), FrankenList.Edit.insert(index, next + 1),
+                            FrankenList.Edit.remove(removeAt)));
+                    // the batch indices refer to the list before the batch
+                    comp.add(index, next++);
+                    comp.add(index + 1, next++);
+                    comp.remove(removeAt < index ? removeAt : removeAt + 2);
+                    assertThat(new ArrayList<>(fl), is(comp));
+                }
+                default -> {
+                    for (int j = 0; j < 30; j++) {
+                        fl.add(next);
+                        comp.add(next++);
+                    }
+                }
+            }
+            for (int j = 0; j < handles.size(); j++) {
+                assertThat(handles.get(j).index(), is(comp.indexOf(bookmarked.get(j))));
+            }
+        }
+        assertThat(fl, contains(comp.toArray()));
+
+        FrankenList.Handle handle = handles.getFirst();
+        fl.release(handle);
+        assertThat(handle.isValid(), is(false));
+        fl.clear();
+        assertThat(handles.stream().noneMatch(FrankenList.Handle::isValid), is(true));
+    }
+
+    @Test
+    public void testHandleOpsInManySections() {
+        // the handle ops work on the section of the handle, over several groups of the root
+        FrankenList<Long> fl = new FrankenList<>(2);
+        ArrayList<Long> comp = new ArrayList<>();
+        long next = 0;
+        for (; next < 6_000; next++) {
+            fl.add(next);
+            comp.add(next);
+        }
+        List<FrankenList.Handle> handles = new ArrayList<>();
+        List<Long> bookmarked = new ArrayList<>();
+        for (int i = 0; i < 6_000; i += 50) {
+            handles.add(fl.handle(i));
+            bookmarked.add(comp.get(i));
+        }
+        // the view is maintained from the changes only
+        ArrayList<Long> view = new ArrayList<>(fl);
+        fl.subscribe(20, changes -> {
+            for (FrankenList.Change<Long> change : changes) {
+                switch (change.type()) {
+                    case INSERT -> view.addAll(change.index(), change.values());
+                    case REMOVE -> view.subList(change.index(), change.index() + change.count()).clear();
+                    case SET -> {
+                        for (int i = 0; i < change.count(); i++) {
+                            view.set(change.index() + i, change.values().get(i));
+                        }
+                    }
+                }
+            }
+        });
+
+        Random r = new Random(100);
+        for (int i = 0; i < 5_000; i++) {
+            int h = r.nextInt(handles.size());
+            FrankenList.Handle handle = handles.get(h);
+            if (!handle.isValid()) {
+                // the element was removed, index based changes keep the sections moving
+                int index = r.nextInt(comp.size() + 1);
+                fl.add(index, next);
+                comp.add(index, next++);
+                continue;
+            }
+            int index = comp.indexOf(bookmarked.get(h));
+            switch (r.nextInt(5)) {
+                case 0 -> {
+                    fl.insertBefore(handle, next);
+                    comp.add(index, next++);
+                }
+                case 1 -> {
+                    fl.insertAfter(handle, next);
+                    comp.add(index + 1, next++);
+                }
+                case 2 -> {
+                    assertThat(fl.set(handle, -next), is(comp.set(index, -next)));
+                    bookmarked.set(h, -next++);
+                }
+                case 3 -> {
+                    if (r.nextInt(10) == 0) {
+                        assertThat(fl.remove(handle), is(comp.remove(index)));
+                        assertThat(handle.isValid(), is(false));
+                    }
+                }
+                default -> assertThat(fl.get(handle), is(comp.get(index)));
+            }
+            for (int j = 0; j < handles.size(); j++) {
+                if (handles.get(j).isValid()) {
+                    assertThat(handles.get(j).index(), is(comp.indexOf(bookmarked.get(j))));
+                }
+            }
+        }
+        assertThat(new ArrayList<>(fl), is(comp));
+        fl.publishChanges();
+        assertThat(view, is(comp));
+    }
 }
@@ -0,0 +1,93 @@
+package paxel.lib;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static paxel.lib.FrankenTable.ColumnType.*;
+
+public class FrankenTableTest {
+
+    private static final int TIMESTAMP = 0;
+    private static final int ID = 1;
+    private static final int PRICE = 2;
+    private static final int QTY = 3;
+
+    @Test
+    public void testInsertAndRemove() {
+        FrankenTable table = new FrankenTable(20, LONG, LONG, DOUBLE, INT);
+        List<long[]> comp = new ArrayList<>();
+        Random r = new Random(100);
+
+        for (int i = 0; i < 3_000; i++) {
+            if (comp.isEmpty() || r.nextInt(3) > 0) {
+                int index = r.nextInt(comp.size() + 1);
+                table.insertRow(index);
+                table.setLong(index, TIMESTAMP, i);
+                table.setLong(index, ID, -i);
+                table.setDouble(index, PRICE, i / 2.0);
+                table.setInt(index, QTY, i % 100);
+                comp.add(index, new long[]{i, -i, i % 100});
+            } else {
+                int index = r.nextInt(comp.size());
+                table.removeRow(index);
+                comp.remove(index);
+            }
+        }
+
+        assertThat(table.size(), is(comp.size()));
+        for (int i = 0; i < comp.size(); i++) {
+            long[] row = comp.get(i);
+            assertThat(table.getLong(i, TIMESTAMP), is(row[0]));
+            assertThat(table.getLong(i, ID), is(row[1]));
+            assertThat(table.getDouble(i, PRICE), is(row[0] / 2.0));
+            assertThat(table.getInt(i, QTY), is((int) row[2]));
+        }
+    }
+
+    @Test
+    public void testNewRowsAreZero() {
+        FrankenTable table = new FrankenTable(4, LONG);
+        for (int i = 0; i < 10; i++) {
+            table.setLong(table.addRow(), 0, 17);
+        }
+        table.removeRow(9);
+        table.removeRow(0);
+        table.insertRow(3);
+        assertThat(table.getLong(table.addRow(), 0), is(0L));
+        assertThat(table.getLong(3, 0), is(0L));
+    }
+
+    @Test
+    public void testScansAndProjection() {
+        FrankenTable table = new FrankenTable(16, LONG, LONG, DOUBLE, INT);
+        long expectedQty = 0;
+        for (int i = 0; i < 1_000; i++) {
+            int row = table.addRow();
+            table.setLong(row, TIMESTAMP, i);
+            table.setDouble(row, PRICE, 0.5);
+            table.setInt(row, QTY, i);
+            if (i >= 100 && i < 500) {
+                expectedQty += i;
+            }
+        }
+
+        assertThat(table.reduceLong(QTY, 100, 500, 0, Long::sum), is(expectedQty));
+        assertThat(table.reduceDouble(PRICE, 0, 1_000, 0, Double::sum), is(500.0));
+
+        long[] sum = new long[1];
+        table.forEachLong(TIMESTAMP, v -> sum[0] += v);
+        assertThat(sum[0], is(999L * 1000 / 2));
+
+        FrankenTable projection = table.project(QTY, TIMESTAMP);
+        assertThat(projection.columnCount(), is(2));
+        assertThat(projection.columnType(0), is(INT));
+        assertThat(projection.size(), is(1_000));
+        assertThat(projection.getInt(17, 0), is(17));
+        assertThat(projection.toLongArray(1), is(table.toLongArray(TIMESTAMP)));
+    }
+}
@@ -0,0 +1,102 @@
+package paxel.lib;
+
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class FrankenTextTest {
+
+    @Test
+    public void testInsertAndDelete() {
+        FrankenText text = new FrankenText(16);
+        StringBuilder comp = new StringBuilder();
+        Random r = new Random(100);
+
+        for (int i = 0; i < 5_000; i++) {
+            if (comp.isEmpty() || r.nextInt(3) > 0) {
+                int offset = r.nextInt(comp.length() + 1);
+                String value = randomText(r, r.nextInt(40));
+                text.insert(offset, value);
+                comp.insert(offset, value);
+            } else {
+                int start = r.nextInt(comp.length());
+                int end = start + r.nextInt(Math.min(60, comp.length() - start) + 1);
+                text.delete(start, end);
+                comp.delete(start, end);
+            }
+            assertThat(text.length(), is(comp.length()));
+        }
+        assertThat(text.toString(), is(comp.toString()));
+        for (int i = 0; i < comp.length(); i++) {
+            assertThat(text.charAt(i), is(comp.charAt(i)));
+        }
+
+        text.delete(0, text.length());
+        assertThat(text.toString(), is(""));
+        assertThat(text.lineCount(), is(1));
+    }
+
+    @Test
+    public void testLines() {
+        FrankenText text = new FrankenText(8);
+        StringBuilder comp = new StringBuilder();
+        Random r = new Random(200);
+
+        for (int i = 0; i < 500; i++) {
+            int offset = r.nextInt(comp.length() + 1);
+            String value = randomText(r, r.nextInt(20));
+            text.insert(offset, value);
+            comp.insert(offset, value);
+            if (r.nextInt(4) == 0) {
+                int start = r.nextInt(comp.length() + 1);
+                int end = start + r.nextInt(comp.length() - start + 1) / 4;
+                text.delete(start, end);
+                comp.delete(start, end);
+            }
+        }
+        String[] lines = comp.toString().split("\n", -1);
+        assertThat(text.lineCount(), is(lines.length));
+        int offset = 0;
+        for (int line = 0; line < lines.length; line++) {
+            assertThat(text.lineStart(line), is(offset));
+            assertThat(text.lineOf(offset), is(line));
+            assertThat(text.line(line).toString(), is(lines[line]));
+            offset += lines[line].length() + 1;
+        }
+        assertThat(text.lineOf(text.length()), is(lines.length - 1));
+    }
+
+    @Test
+    public void testSubSequence() {
+        FrankenText text = new FrankenText(4);
+        text.append("Hello\nFranken\nText");
+
+        CharSequence view = text.subSequence(3, 15);
+        assertThat(view.toString(), is("lo\nFranken\nT"));
+        assertThat(view.length(), is(12));
+        assertThat(view.charAt(3), is('F'));
+        assertThat(view.subSequence(3, 10).toString(), is("Franken"));
+        assertThat(text.line(1).toString(), is("Franken"));
+
+        text.replace(6, 13, "Monster");
+        assertThat(text.toString(), is("Hello\nMonster\nText"));
+        try {
+            view.charAt(0);
+            throw new AssertionError("The view should have failed");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+
+    private static String randomText(Random r, int length) {
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            result.append(r.nextInt(8) == 0 ? '\n' : (char) ('a' + r.nextInt(26)));
+        }
+        return result.toString();
+    }
+}
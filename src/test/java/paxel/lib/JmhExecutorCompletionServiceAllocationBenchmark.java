@@ -0,0 +1,78 @@
+package paxel.lib;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the allocations of a submitted task: the former wrapping into a
+ * CompletableFuture, a completer, the FutureTask of submit and a thenApply
+ * stage, against the single CompletingTask. Run with {@code -prof gc}.
+ */
+@Warmup(time = 1, iterations = 2)
+@Measurement(time = 1, iterations = 3)
+@Fork(1)
+public class JmhExecutorCompletionServiceAllocationBenchmark {
+
+    private static final Callable<String> CALLABLE = () -> "result";
+    private static final Runnable RUNNABLE = () -> {
+    };
+
+    @Benchmark
+    public Object callable__wrapped(Provider prov) {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        prov.executor.submit(new CallableCompleter<>(CALLABLE, future));
+        return future.join();
+    }
+
+    @Benchmark
+    public Object callable__single(Provider prov) {
+        return prov.service.submit(CALLABLE).join();
+    }
+
+    @Benchmark
+    public Object runnable__wrapped(Provider prov) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        prov.executor.submit(new RunnableCompleter(RUNNABLE, future));
+        return future.thenApply(f -> "result").join();
+    }
+
+    @Benchmark
+    public Object runnable__single(Provider prov) {
+        return prov.service.submit(RUNNABLE, "result").join();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Provider {
+
+        ExecutorService executor;
+        ExecutorCompletionService service;
+
+        @Setup(Level.Trial)
+        public void init() {
+            executor = Executors.newSingleThreadExecutor();
+            service = new ExecutorCompletionService(executor);
+        }
+
+        @TearDown(Level.Trial)
+        public void shutdown() {
+            service.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhExecutorCompletionServiceAllocationBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,72 @@
+package paxel.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares 50k small Callables submitted one by one and joined with allOf
+ * against a single submitAll. Run with {@code -prof gc} for the allocations.
+ */
+@Warmup(time = 1, iterations = 2)
+@Measurement(time = 1, iterations = 3)
+@Fork(1)
+public class JmhExecutorCompletionServiceBatchBenchmark {
+
+    @Benchmark
+    public Object submit____50_k_allOf(Provider prov) {
+        final CompletableFuture<?>[] futures = new CompletableFuture[prov.tasks.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = prov.service.submit(prov.tasks.get(i));
+        }
+        CompletableFuture.allOf(futures).join();
+        final List<Object> results = new ArrayList<>(futures.length);
+        for (CompletableFuture<?> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    @Benchmark
+    public Object submitAll_50_k(Provider prov) {
+        return prov.service.submitAll(prov.tasks).join();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Provider {
+
+        ExecutorCompletionService service;
+        final List<Callable<Integer>> tasks = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void init() {
+            service = new ExecutorCompletionService(Executors.newFixedThreadPool(4));
+            for (int i = 0; i < 50_000; i++) {
+                final int value = i;
+                tasks.add(() -> value + 1);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void shutdown() {
+            service.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhExecutorCompletionServiceBatchBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,101 @@
+package paxel.lib;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs 100k concurrent tasks, that block for 10 ms each, on a pool of 200
+ * platform threads and on virtual threads.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class JmhExecutorCompletionServiceBenchmark {
+
+    private static final int TASKS = 100_000;
+
+    @Benchmark
+    public Object blocking_100_k_platform(PlatformProvider prov) {
+        return all(prov.service);
+    }
+
+    @Benchmark
+    public Object blocking_100_k_virtual(VirtualProvider prov) {
+        return all(prov.service);
+    }
+
+    @Benchmark
+    public Object blocking_100_k_virtual_scope(VirtualProvider prov) throws Exception {
+        try (TaskScope scope = prov.service.scope()) {
+            for (int i = 0; i < TASKS; i++) {
+                scope.fork(JmhExecutorCompletionServiceBenchmark::block);
+            }
+            scope.join();
+        }
+        return prov;
+    }
+
+    private static Object all(ExecutorCompletionService service) {
+        final CompletableFuture<?>[] futures = new CompletableFuture[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            futures[i] = service.submit(JmhExecutorCompletionServiceBenchmark::block);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    private static Integer block() throws InterruptedException {
+        // e.g. a remote call
+        Thread.sleep(10);
+        return 1;
+    }
+
+    @State(Scope.Benchmark)
+    public static class PlatformProvider {
+
+        ExecutorCompletionService service;
+
+        @Setup(Level.Trial)
+        public void init() {
+            service = new ExecutorCompletionService(Executors.newFixedThreadPool(200));
+        }
+
+        @TearDown(Level.Trial)
+        public void shutdown() {
+            service.shutdown();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class VirtualProvider {
+
+        ExecutorCompletionService service;
+
+        @Setup(Level.Trial)
+        public void init() {
+            service = ExecutorCompletionService.virtualThreads();
+        }
+
+        @TearDown(Level.Trial)
+        public void shutdown() {
+            service.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhExecutorCompletionServiceBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,80 @@
+package paxel.lib;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Submits 100k small tasks to an unbounded service and to services bounded to
+ * 1024 permits, blocking and async. The unbounded executor queues all tasks,
+ * the bounded ones never hold more than 1024.
+ */
+@Warmup(time = 1, iterations = 2)
+@Measurement(time = 1, iterations = 3)
+@Fork(1)
+public class JmhExecutorCompletionServiceBoundedBenchmark {
+
+    private static final int TASKS = 100_000;
+
+    @Benchmark
+    public Object unbounded_____100_k(Provider prov) {
+        return submit(prov.unbounded);
+    }
+
+    @Benchmark
+    public Object bounded_______100_k(Provider prov) {
+        return submit(prov.bounded);
+    }
+
+    @Benchmark
+    public Object boundedAsync__100_k(Provider prov) {
+        final CompletableFuture<?>[] futures = new CompletableFuture[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            final int value = i;
+            futures[i] = prov.bounded.submitAsync(() -> value + 1).thenCompose(f -> f);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    private static Object submit(ExecutorCompletionService service) {
+        final CompletableFuture<?>[] futures = new CompletableFuture[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            final int value = i;
+            futures[i] = service.submit(() -> value + 1);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Provider {
+
+        ExecutorCompletionService unbounded;
+        ExecutorCompletionService bounded;
+
+        @Setup(Level.Trial)
+        public void init() {
+            unbounded = new ExecutorCompletionService(Executors.newFixedThreadPool(4));
+            bounded = new ExecutorCompletionService(Executors.newFixedThreadPool(4), 1024);
+        }
+
+        @TearDown(Level.Trial)
+        public void shutdown() {
+            unbounded.shutdown();
+            bounded.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhExecutorCompletionServiceBoundedBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
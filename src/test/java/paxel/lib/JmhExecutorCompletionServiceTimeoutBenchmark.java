@@ -0,0 +1,87 @@
+package paxel.lib;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Queues 1M small tasks behind a blocking task, so that 1M timeouts are
+ * pending, then lets them run. The timeouts are either attached with
+ * orTimeout, that schedules each in the delay queue of the JDK, or are
+ * deadlines in the timing wheel of the service. Run with {@code -prof gc} for
+ * the allocations.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class JmhExecutorCompletionServiceTimeoutBenchmark {
+
+    private static final int TASKS = 1_000_000;
+
+    @Benchmark
+    public Object orTimeout_1_M_pending(Provider prov) {
+        final CountDownLatch release = block(prov.service);
+        final CompletableFuture<?>[] futures = new CompletableFuture[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            final int value = i;
+            futures[i] = prov.service.submit(() -> value + 1).orTimeout(1, TimeUnit.MINUTES);
+        }
+        release.countDown();
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    @Benchmark
+    public Object deadline_1_M_pending(Provider prov) {
+        final CountDownLatch release = block(prov.service);
+        final CompletableFuture<?>[] futures = new CompletableFuture[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            final int value = i;
+            futures[i] = prov.service.submit(() -> value + 1, 1, TimeUnit.MINUTES);
+        }
+        release.countDown();
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    private static CountDownLatch block(ExecutorCompletionService service) {
+        final CountDownLatch release = new CountDownLatch(1);
+        service.submit(() -> {
+            release.await();
+            return null;
+        });
+        return release;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Provider {
+
+        ExecutorCompletionService service;
+
+        @Setup(Level.Trial)
+        public void init() {
+            service = new ExecutorCompletionService(Executors.newFixedThreadPool(4));
+        }
+
+        @TearDown(Level.Trial)
+        public void shutdown() {
+            service.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhExecutorCompletionServiceTimeoutBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,93 @@
+package paxel.lib;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the sum over a random range of up to 100k elements by a loop of
+ * get calls and by the cached section aggregates, with and without an insert
+ * in front of each sum.
+ */
+@Warmup(time = 1, iterations = 1)
+@Measurement(time = 1, iterations = 1)
+@Fork(1)
+public class JmhFrankenListAggregateBenchmark {
+
+    private static final int SIZE = 1_000_000;
+
+    @Benchmark
+    public void sum________1_000_k_FrankenList_get(FrankenDataProvider1000k prov, Blackhole bh) {
+        final int from = prov.random.nextInt(SIZE - 100_000);
+        final int to = from + prov.random.nextInt(100_000);
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += prov.list.get(i);
+        }
+        bh.consume(sum);
+    }
+
+    @Benchmark
+    public void sum________1_000_k_FrankenList_aggregate(AggregatedFrankenDataProvider1000k prov, Blackhole bh) {
+        final int from = prov.random.nextInt(SIZE - 100_000);
+        final int to = from + prov.random.nextInt(100_000);
+        bh.consume(prov.list.<Long>aggregate(from, to));
+    }
+
+    @Benchmark
+    public void insertSum__1_000_k_FrankenList_aggregate(AggregatedFrankenDataProvider1000k prov, Blackhole bh) {
+        prov.list.add(prov.random.nextInt(prov.list.size()), 1L);
+        final int from = prov.random.nextInt(SIZE - 100_000);
+        final int to = from + prov.random.nextInt(100_000);
+        bh.consume(prov.list.<Long>aggregate(from, to));
+    }
+
+    private static FrankenList<Long> fill(FrankenList<Long> list) {
+        Random r = new Random(100);
+        for (int i = 0; i < SIZE; i++) {
+            list.add((long) r.nextInt(1_000));
+        }
+        return list;
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrankenDataProvider1000k {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = fill(new FrankenList<>());
+            random = new Random(200);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class AggregatedFrankenDataProvider1000k {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = fill(new FrankenList<>());
+            list.enableAggregation(FrankenList.Monoid.<Long>summingLong(v -> v));
+            random = new Random(200);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhFrankenListAggregateBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,76 @@
+package paxel.lib;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Steady insert/remove churn that keeps the size of the list. Run it with
+ * {@code -prof gc} to see the allocation per operation
+ * (gc.alloc.rate.norm).
+ */
+@Warmup(time = 1, iterations = 1)
+@Measurement(time = 1, iterations = 1)
+@Fork(1)
+public class JmhFrankenListChurnBenchmark {
+
+    private static final Long VALUE = 1L;
+
+    @Benchmark
+    public void churn____1_000_k_FrankenList(FrankenDataProvider1000k prov, Blackhole bh) {
+        final FrankenList<Long> list = prov.list;
+        final Random random = prov.random;
+        // 100 inserts and 100 removes, so sections are split and dropped again and again
+        for (int i = 0; i < 100; i++) {
+            list.add(random.nextInt(list.size()), VALUE);
+        }
+        for (int i = 0; i < 100; i++) {
+            bh.consume(list.remove(random.nextInt(list.size())));
+        }
+    }
+
+    @Benchmark
+    public void churn____1_000_k_FrankenList_clustered(FrankenDataProvider1000k prov, Blackhole bh) {
+        final FrankenList<Long> list = prov.list;
+        final Random random = prov.random;
+        // inserts and removes in the same region, that split and drop the same sections
+        final int base = random.nextInt(list.size() - 2_000);
+        for (int i = 0; i < 100; i++) {
+            list.add(base + random.nextInt(1_000), VALUE);
+        }
+        for (int i = 0; i < 100; i++) {
+            bh.consume(list.remove(base + random.nextInt(1_000)));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrankenDataProvider1000k {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = new FrankenList<>();
+            for (int i = 0; i < 1_000_000; i++) {
+                list.add(VALUE);
+            }
+            random = new Random(100);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhFrankenListChurnBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,109 @@
+package paxel.lib;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares random and clustered reads of a plain FrankenList with a
+ * FrankenList with compressed cold sections. The compressed providers print
+ * the bytes per packed element and the cache hit rate after the trial. An
+ * uncompressed element costs a LinkedList node and a Long, roughly 40 bytes.
+ */
+@Warmup(time = 1, iterations = 1)
+@Measurement(time = 1, iterations = 1)
+@Fork(1)
+public class JmhFrankenListCompressionBenchmark {
+
+    @Benchmark
+    public void randomGet____1_000_k_FrankenList(FrankenDataProvider1000k prov, Blackhole bh) {
+        randomGet(prov.list, prov.random, bh);
+    }
+
+    @Benchmark
+    public void randomGet____1_000_k_FrankenList_compressed(CompressedFrankenDataProvider1000k prov, Blackhole bh) {
+        randomGet(prov.list, prov.random, bh);
+    }
+
+    @Benchmark
+    public void clusteredGet____1_000_k_FrankenList(FrankenDataProvider1000k prov, Blackhole bh) {
+        clusteredGet(prov.list, prov.random, bh);
+    }
+
+    @Benchmark
+    public void clusteredGet____1_000_k_FrankenList_compressed(CompressedFrankenDataProvider1000k prov, Blackhole bh) {
+        clusteredGet(prov.list, prov.random, bh);
+    }
+
+    private static void randomGet(FrankenList<Long> list, Random random, Blackhole bh) {
+        for (int i = 0; i < 10; i++) {
+            bh.consume(list.get(random.nextInt(list.size())));
+        }
+    }
+
+    private static void clusteredGet(FrankenList<Long> list, Random random, Blackhole bh) {
+        // 10 reads close to each other, mostly in the same section
+        final int base = random.nextInt(list.size() - 1_000);
+        for (int i = 0; i < 10; i++) {
+            bh.consume(list.get(base + random.nextInt(1_000)));
+        }
+    }
+
+    private static FrankenList<Long> fill(FrankenList<Long> list, int max) {
+        Random r = new Random(100);
+        long current = 0;
+        for (int i = 0; i < max; i++) {
+            current += r.nextInt(10);
+            list.add(current);
+        }
+        return list;
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrankenDataProvider1000k {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = fill(new FrankenList<>(), 1_000_000);
+            random = new Random(200);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CompressedFrankenDataProvider1000k {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = fill(new FrankenList<>(), 1_000_000);
+            list.enableCompression(10_000, 16);
+            random = new Random(200);
+        }
+
+        @TearDown(Level.Trial)
+        public void report() {
+            FrankenList.CompressionStatistics statistics = list.compressionStatistics();
+            System.out.printf("%n%d packed sections, %.2f bytes per packed element, hit rate %.3f (%d decodes)%n",
+                    statistics.packedSections(), statistics.bytesPerPackedElement(), statistics.hitRate(), statistics.decodes());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhFrankenListCompressionBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
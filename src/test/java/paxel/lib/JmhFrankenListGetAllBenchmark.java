@@ -0,0 +1,90 @@
+package paxel.lib;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the lookup of 5k and 50k random indices in a FrankenList of 1M
+ * elements by a loop of get calls and by a single getAll.
+ */
+@Warmup(time = 1, iterations = 1)
+@Measurement(time = 1, iterations = 1)
+@Fork(1)
+public class JmhFrankenListGetAllBenchmark {
+
+    private static final int SIZE = 1_000_000;
+
+    @Benchmark
+    public void lookup__5_k_1_000_k_FrankenList_get(FrankenDataProvider1000k prov, Blackhole bh) {
+        get(prov, 5_000, bh);
+    }
+
+    @Benchmark
+    public void lookup__5_k_1_000_k_FrankenList_getAll(FrankenDataProvider1000k prov, Blackhole bh) {
+        getAll(prov, 5_000, bh);
+    }
+
+    @Benchmark
+    public void lookup_50_k_1_000_k_FrankenList_get(FrankenDataProvider1000k prov, Blackhole bh) {
+        get(prov, 50_000, bh);
+    }
+
+    @Benchmark
+    public void lookup_50_k_1_000_k_FrankenList_getAll(FrankenDataProvider1000k prov, Blackhole bh) {
+        getAll(prov, 50_000, bh);
+    }
+
+    private static void get(FrankenDataProvider1000k prov, int count, Blackhole bh) {
+        final int[] indices = prov.indices(count);
+        final Long[] out = new Long[count];
+        for (int i = 0; i < indices.length; i++) {
+            out[i] = prov.list.get(indices[i]);
+        }
+        bh.consume(out);
+    }
+
+    private static void getAll(FrankenDataProvider1000k prov, int count, Blackhole bh) {
+        final Long[] out = new Long[count];
+        prov.list.getAll(prov.indices(count), out);
+        bh.consume(out);
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrankenDataProvider1000k {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = new FrankenList<>();
+            for (int i = 0; i < SIZE; i++) {
+                list.add((long) i);
+            }
+            random = new Random(200);
+        }
+
+        int[] indices(int count) {
+            final int[] indices = new int[count];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = random.nextInt(SIZE);
+            }
+            return indices;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhFrankenListGetAllBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,65 @@
+package paxel.lib;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares edits at a handle with the same edits by index in a big
+ * FrankenList. The handle ops work on the section of the handle, the index
+ * ops search the section of the index in the root for each call. Both grow
+ * the list by the same number of elements behind the handle.
+ */
+@Warmup(time = 1, iterations = 1)
+@Measurement(time = 1, iterations = 1)
+@Fork(1)
+public class JmhFrankenListHandleBenchmark {
+
+    private static final Long VALUE = 1L;
+
+    @Benchmark
+    public void byHandle(FrankenDataProvider prov, Blackhole bh) {
+        final FrankenList<Long> list = prov.list;
+        final FrankenList.Handle handle = prov.handle;
+        list.insertAfter(handle, VALUE);
+        bh.consume(list.get(handle));
+        bh.consume(list.set(handle, VALUE));
+    }
+
+    @Benchmark
+    public void byIndex(FrankenDataProvider prov, Blackhole bh) {
+        final FrankenList<Long> list = prov.list;
+        final int index = prov.handle.index();
+        list.add(index + 1, VALUE);
+        bh.consume(list.get(index));
+        bh.consume(list.set(index, VALUE));
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrankenDataProvider {
+
+        FrankenList<Long> list;
+        FrankenList.Handle handle;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = new FrankenList<>();
+            for (int i = 0; i < 10_000_000; i++) {
+                list.add(VALUE);
+            }
+            handle = list.handle(list.size() / 2);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhFrankenListHandleBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,132 @@
+package paxel.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the FrankenList with and without element index.
+ * <p>
+ * The build benchmarks are meant to be run with {@code -prof gc}: the
+ * difference of gc.alloc.rate.norm between the plain and the indexed list is
+ * the memory overhead of the index.
+ */
+@Warmup(time = 1, iterations = 1)
+@Measurement(time = 1, iterations = 1)
+@Fork(1)
+public class JmhFrankenListIndexBenchmark {
+
+    @Benchmark
+    public void contains____1_000_k_FrankenList(FrankenDataProvider1000k prov, Blackhole bh) {
+        for (Long value : prov.searchedValues) {
+            bh.consume(prov.list.contains(value));
+        }
+    }
+
+    @Benchmark
+    public void contains____1_000_k_FrankenList_indexed(IndexedFrankenDataProvider1000k prov, Blackhole bh) {
+        for (Long value : prov.searchedValues) {
+            bh.consume(prov.list.contains(value));
+        }
+    }
+
+    @Benchmark
+    public void insertRemove____1_000_k_FrankenList(FrankenDataProvider1000k prov, Blackhole bh) {
+        insertAndRemove(prov.list, prov.searchedValues);
+        bh.consume(prov.list);
+    }
+
+    @Benchmark
+    public void insertRemove____1_000_k_FrankenList_indexed(IndexedFrankenDataProvider1000k prov, Blackhole bh) {
+        insertAndRemove(prov.list, prov.searchedValues);
+        bh.consume(prov.list);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public void build____1_000_k_FrankenList(Blackhole bh) {
+        bh.consume(fill(new FrankenList<>(), 1_000_000));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public void build____1_000_k_FrankenList_indexed(Blackhole bh) {
+        final FrankenList<Long> list = new FrankenList<>();
+        list.enableIndex();
+        bh.consume(fill(list, 1_000_000));
+    }
+
+    private void insertAndRemove(FrankenList<Long> list, List<Long> values) {
+        // the size stays the same
+        int index = 17;
+        for (Long value : values) {
+            index = (index * 31 + 7) % list.size();
+            list.add(index, value);
+        }
+        for (Long value : values) {
+            list.remove(value);
+        }
+    }
+
+    private static FrankenList<Long> fill(FrankenList<Long> list, int max) {
+        Random r = new Random(100);
+        long current = 0;
+        for (int i = 0; i < max; i++) {
+            current += r.nextInt(10);
+            list.add(current);
+        }
+        return list;
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrankenDataProvider1000k {
+
+        FrankenList<Long> list;
+        List<Long> searchedValues;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = fill(new FrankenList<>(), 1_000_000);
+            searchedValues = searchedValues();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class IndexedFrankenDataProvider1000k {
+
+        FrankenList<Long> list;
+        List<Long> searchedValues;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = fill(new FrankenList<>(), 1_000_000);
+            list.enableIndex();
+            searchedValues = searchedValues();
+        }
+    }
+
+    private static List<Long> searchedValues() {
+        List<Long> searchedValues = new ArrayList<>();
+        Random r = new Random(200);
+        for (int i = 0; i < 10; i++) {
+            searchedValues.add((long) r.nextInt(5_000_000));
+        }
+        return searchedValues;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhFrankenListIndexBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -34,6 +34,13 @@ public class JmhFrankenListInsertBenchmark {
     }
 
 
+    @Benchmark
+    public void addTo______100_k_FrankenList_mergeSorted(FrankenDataProvider100k prov, Blackhole bh) {
+        final FrankenList<Long> listUnderTest = (FrankenList<Long>) prov.sortedList;
+        listUnderTest.mergeSorted(prov.unsortedNewValues, null);
+        bh.consume(listUnderTest);
+    }
+
     @Benchmark
     public void addTo______100_k_ArrayList(ArrayListDataProvider100k prov, Blackhole bh) {
         final List<Long> unsortedNewValues = prov.unsortedNewValues;
@@ -70,6 +77,13 @@ public class JmhFrankenListInsertBenchmark {
 
 
 
+    @Benchmark
+    public void addTo___10_000_k_FrankenList_mergeSorted(FrankenDataProvider10m prov, Blackhole bh) {
+        final FrankenList<Long> listUnderTest = (FrankenList<Long>) prov.sortedList;
+        listUnderTest.mergeSorted(prov.unsortedNewValues, null);
+        bh.consume(listUnderTest);
+    }
+
     @Benchmark
     public void addTo___10_000_k_ArrayList(ArrayListDataProvider10m prov, Blackhole bh) {
         final List<Long> unsortedNewValues = prov.unsortedNewValues;
@@ -0,0 +1,88 @@
+package paxel.lib;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares get and insert/remove in a FrankenList of 1M elements without
+ * nulls (dense sections) and with 90% nulls (sparse sections).
+ */
+@Warmup(time = 1, iterations = 1)
+@Measurement(time = 1, iterations = 1)
+@Fork(1)
+public class JmhFrankenListSparseBenchmark {
+
+    private static final int SIZE = 1_000_000;
+
+    @Benchmark
+    public void get___________1_000_k_FrankenList_dense(DenseProvider1000k prov, Blackhole bh) {
+        bh.consume(prov.list.get(prov.random.nextInt(SIZE)));
+    }
+
+    @Benchmark
+    public void get___________1_000_k_FrankenList_sparse(SparseProvider1000k prov, Blackhole bh) {
+        bh.consume(prov.list.get(prov.random.nextInt(SIZE)));
+    }
+
+    @Benchmark
+    public void insertRemove__1_000_k_FrankenList_dense(DenseProvider1000k prov, Blackhole bh) {
+        prov.list.add(prov.random.nextInt(SIZE), 1L);
+        bh.consume(prov.list.remove(prov.random.nextInt(SIZE)));
+    }
+
+    @Benchmark
+    public void insertRemove__1_000_k_FrankenList_sparse(SparseProvider1000k prov, Blackhole bh) {
+        prov.list.add(prov.random.nextInt(SIZE), null);
+        bh.consume(prov.list.remove(prov.random.nextInt(SIZE)));
+    }
+
+    private static FrankenList<Long> fill(int nullsPerTen) {
+        final FrankenList<Long> list = new FrankenList<>();
+        final Long value = 1L;
+        for (int i = 0; i < SIZE; i++) {
+            list.add(i % 10 < nullsPerTen ? null : value);
+        }
+        return list;
+    }
+
+    @State(Scope.Benchmark)
+    public static class DenseProvider1000k {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = fill(0);
+            random = new Random(200);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SparseProvider1000k {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = fill(9);
+            random = new Random(200);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhFrankenListSparseBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
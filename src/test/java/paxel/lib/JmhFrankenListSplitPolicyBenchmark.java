@@ -0,0 +1,161 @@
+package paxel.lib;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the split policies for sequential (ascending in the middle of the
+ * list), random and clustered inserts. The providers print the average fill
+ * of the sections after the trial.
+ */
+@Warmup(time = 1, iterations = 1)
+@Measurement(time = 1, iterations = 1)
+@Fork(1)
+public class JmhFrankenListSplitPolicyBenchmark {
+
+    @Benchmark
+    public void sequential_midpoint(MidpointProvider prov, Blackhole bh) {
+        sequential(prov.data, bh);
+    }
+
+    @Benchmark
+    public void sequential_atInsert(AtInsertProvider prov, Blackhole bh) {
+        sequential(prov.data, bh);
+    }
+
+    @Benchmark
+    public void sequential_threeWay(ThreeWayProvider prov, Blackhole bh) {
+        sequential(prov.data, bh);
+    }
+
+    @Benchmark
+    public void random_____midpoint(MidpointProvider prov, Blackhole bh) {
+        random(prov.data, bh);
+    }
+
+    @Benchmark
+    public void random_____atInsert(AtInsertProvider prov, Blackhole bh) {
+        random(prov.data, bh);
+    }
+
+    @Benchmark
+    public void random_____threeWay(ThreeWayProvider prov, Blackhole bh) {
+        random(prov.data, bh);
+    }
+
+    @Benchmark
+    public void clustered__midpoint(MidpointProvider prov, Blackhole bh) {
+        clustered(prov.data, bh);
+    }
+
+    @Benchmark
+    public void clustered__atInsert(AtInsertProvider prov, Blackhole bh) {
+        clustered(prov.data, bh);
+    }
+
+    @Benchmark
+    public void clustered__threeWay(ThreeWayProvider prov, Blackhole bh) {
+        clustered(prov.data, bh);
+    }
+
+    private static void sequential(Data data, Blackhole bh) {
+        // every insert is directly behind the previous one
+        data.list.add(data.cursor++, 1L);
+        bh.consume(data.list);
+    }
+
+    private static void random(Data data, Blackhole bh) {
+        data.list.add(data.random.nextInt(data.list.size()), 1L);
+        bh.consume(data.list);
+    }
+
+    private static void clustered(Data data, Blackhole bh) {
+        // 10 hot regions, that move with the inserts in front of them
+        final int hotspot = data.random.nextInt(10);
+        data.list.add(data.list.size() / 10 * hotspot + data.random.nextInt(1_000), 1L);
+        bh.consume(data.list);
+    }
+
+    private static final class Data {
+
+        private final FrankenList<Long> list;
+        private final Random random = new Random(100);
+        private int cursor;
+
+        private Data(FrankenList.SplitPolicy policy) {
+            list = new FrankenList<>(750, policy);
+            for (int i = 0; i < 1_000_000; i++) {
+                list.add(1L);
+            }
+            cursor = list.size() / 2;
+        }
+
+        private void report() {
+            System.out.printf("%n%d sections, %.2f average fill%n", list.sectionCount(),
+                    list.size() / (750.0 * list.sectionCount()));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class MidpointProvider {
+
+        Data data;
+
+        @Setup(Level.Trial)
+        public void init() {
+            data = new Data(FrankenList.SplitPolicy.MIDPOINT);
+        }
+
+        @TearDown(Level.Trial)
+        public void report() {
+            data.report();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class AtInsertProvider {
+
+        Data data;
+
+        @Setup(Level.Trial)
+        public void init() {
+            data = new Data(FrankenList.SplitPolicy.AT_INSERT);
+        }
+
+        @TearDown(Level.Trial)
+        public void report() {
+            data.report();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ThreeWayProvider {
+
+        Data data;
+
+        @Setup(Level.Trial)
+        public void init() {
+            data = new Data(FrankenList.SplitPolicy.THREE_WAY);
+        }
+
+        @TearDown(Level.Trial)
+        public void report() {
+            data.report();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhFrankenListSplitPolicyBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,89 @@
+package paxel.lib;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares searches in a FrankenList of time clustered values with and
+ * without per-section summaries.
+ */
+@Warmup(time = 1, iterations = 1)
+@Measurement(time = 1, iterations = 1)
+@Fork(1)
+public class JmhFrankenListSummaryBenchmark {
+
+    private static final int SIZE = 1_000_000;
+
+    @Benchmark
+    public void contains____1_000_k_FrankenList(FrankenDataProvider1000k prov, Blackhole bh) {
+        bh.consume(prov.list.contains(prov.random.nextLong(SIZE * 10L)));
+    }
+
+    @Benchmark
+    public void contains____1_000_k_FrankenList_summaries(SummarizedFrankenDataProvider1000k prov, Blackhole bh) {
+        bh.consume(prov.list.contains(prov.random.nextLong(SIZE * 10L)));
+    }
+
+    @Benchmark
+    public void filterRange_1_000_k_FrankenList(FrankenDataProvider1000k prov, Blackhole bh) {
+        final long min = prov.random.nextLong(SIZE * 10L);
+        bh.consume(prov.list.filterRange(min, min + 1_000));
+    }
+
+    @Benchmark
+    public void filterRange_1_000_k_FrankenList_summaries(SummarizedFrankenDataProvider1000k prov, Blackhole bh) {
+        final long min = prov.random.nextLong(SIZE * 10L);
+        bh.consume(prov.list.filterRange(min, min + 1_000));
+    }
+
+    private static FrankenList<Long> fill(FrankenList<Long> list) {
+        Random r = new Random(100);
+        // timestamps, that arrive slightly out of order
+        for (int i = 0; i < SIZE; i++) {
+            list.add(i * 10L + r.nextInt(100));
+        }
+        return list;
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrankenDataProvider1000k {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = fill(new FrankenList<>());
+            random = new Random(200);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SummarizedFrankenDataProvider1000k {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = fill(new FrankenList<>());
+            list.enableSummaries();
+            random = new Random(200);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhFrankenListSummaryBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,121 @@
+package paxel.lib;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures random inserts, removes and reads in very big FrankenLists, where
+ * the root of the sections dominates. All elements are the same Long to keep
+ * the memory down, still the 1_000_000_k list needs a heap of about 48g
+ * (-jvmArgs -Xmx48g) and the 100_000_k list about 6g.
+ */
+@Warmup(time = 1, iterations = 1)
+@Measurement(time = 1, iterations = 1)
+@Fork(1)
+public class JmhFrankenListTreeBenchmark {
+
+    private static final Long VALUE = 1L;
+
+    @Benchmark
+    public void insertRemove____10_000_k(FrankenDataProvider10m prov, Blackhole bh) {
+        insertRemove(prov.list, prov.random, bh);
+    }
+
+    @Benchmark
+    public void get____10_000_k(FrankenDataProvider10m prov, Blackhole bh) {
+        bh.consume(prov.list.get(prov.random.nextInt(prov.list.size())));
+    }
+
+    @Benchmark
+    public void insertRemove___100_000_k(FrankenDataProvider100m prov, Blackhole bh) {
+        insertRemove(prov.list, prov.random, bh);
+    }
+
+    @Benchmark
+    public void get___100_000_k(FrankenDataProvider100m prov, Blackhole bh) {
+        bh.consume(prov.list.get(prov.random.nextInt(prov.list.size())));
+    }
+
+    @Benchmark
+    public void insertRemove_1_000_000_k(FrankenDataProvider1000m prov, Blackhole bh) {
+        insertRemove(prov.list, prov.random, bh);
+    }
+
+    @Benchmark
+    public void get_1_000_000_k(FrankenDataProvider1000m prov, Blackhole bh) {
+        bh.consume(prov.list.get(prov.random.nextInt(prov.list.size())));
+    }
+
+    private static void insertRemove(FrankenList<Long> list, Random random, Blackhole bh) {
+        // inserts split sections and removes drop them again, the size stays the same
+        for (int i = 0; i < 10; i++) {
+            list.add(random.nextInt(list.size()), VALUE);
+        }
+        for (int i = 0; i < 10; i++) {
+            bh.consume(list.remove(random.nextInt(list.size())));
+        }
+    }
+
+    private static FrankenList<Long> fill(int size) {
+        final FrankenList<Long> list = new FrankenList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(VALUE);
+        }
+        return list;
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrankenDataProvider10m {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = fill(10_000_000);
+            random = new Random(100);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrankenDataProvider100m {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            list = fill(100_000_000);
+            random = new Random(100);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrankenDataProvider1000m {
+
+        FrankenList<Long> list;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            // close to the int limit
+            list = fill(1_000_000_000);
+            random = new Random(100);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhFrankenListTreeBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,142 @@
+package paxel.lib;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares random inserts of a short text into a large text with a
+ * StringBuilder. The providers print the allocated chars per used char after
+ * the trial.
+ */
+@Warmup(time = 1, iterations = 1)
+@Measurement(time = 1, iterations = 1)
+@Fork(1)
+public class JmhFrankenTextBenchmark {
+
+    private static final String INSERT = "Franken\n";
+
+    @Benchmark
+    public void insert_____1_000_k_FrankenText(FrankenTextProvider1000k prov, Blackhole bh) {
+        prov.text.insert(prov.random.nextInt(prov.text.length()), INSERT);
+        bh.consume(prov.text);
+    }
+
+    @Benchmark
+    public void insert_____1_000_k_StringBuilder(StringBuilderProvider1000k prov, Blackhole bh) {
+        prov.text.insert(prov.random.nextInt(prov.text.length()), INSERT);
+        bh.consume(prov.text);
+    }
+
+    @Benchmark
+    public void insert____10_000_k_FrankenText(FrankenTextProvider10m prov, Blackhole bh) {
+        prov.text.insert(prov.random.nextInt(prov.text.length()), INSERT);
+        bh.consume(prov.text);
+    }
+
+    @Benchmark
+    public void insert____10_000_k_StringBuilder(StringBuilderProvider10m prov, Blackhole bh) {
+        prov.text.insert(prov.random.nextInt(prov.text.length()), INSERT);
+        bh.consume(prov.text);
+    }
+
+    @Benchmark
+    public void lineStart_10_000_k_FrankenText(FrankenTextProvider10m prov, Blackhole bh) {
+        bh.consume(prov.text.lineStart(prov.random.nextInt(prov.text.lineCount())));
+    }
+
+    private static String content(int length) {
+        Random r = new Random(100);
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            result.append(r.nextInt(60) == 0 ? '\n' : (char) ('a' + r.nextInt(26)));
+        }
+        return result.toString();
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrankenTextProvider1000k {
+
+        FrankenText text;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            text = new FrankenText(content(1_000_000));
+            random = new Random(200);
+        }
+
+        @TearDown(Level.Trial)
+        public void report() {
+            System.out.printf("%n%.3f allocated chars per char%n", text.capacity() / (double) text.length());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrankenTextProvider10m {
+
+        FrankenText text;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            text = new FrankenText(content(10_000_000));
+            random = new Random(200);
+        }
+
+        @TearDown(Level.Trial)
+        public void report() {
+            System.out.printf("%n%.3f allocated chars per char%n", text.capacity() / (double) text.length());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class StringBuilderProvider1000k {
+
+        StringBuilder text;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            text = new StringBuilder(content(1_000_000));
+            random = new Random(200);
+        }
+
+        @TearDown(Level.Trial)
+        public void report() {
+            System.out.printf("%n%.3f allocated chars per char%n", text.capacity() / (double) text.length());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class StringBuilderProvider10m {
+
+        StringBuilder text;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            text = new StringBuilder(content(10_000_000));
+            random = new Random(200);
+        }
+
+        @TearDown(Level.Trial)
+        public void report() {
+            System.out.printf("%n%.3f allocated chars per char%n", text.capacity() / (double) text.length());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhFrankenTextBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,107 @@
+package paxel.lib;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs 1M small tasks on 4 threads over 1M keys and over 1k keys, with the
+ * KeyedExecutor and with futures chained per key in a map, the usual hand
+ * made ordering. The plain submit has no ordering at all.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JmhKeyedExecutorBenchmark {
+
+    private static final int TASKS = 1_000_000;
+
+    @Benchmark
+    public Object keyed___1_M_keys(Provider prov) {
+        return keyed(prov, TASKS);
+    }
+
+    @Benchmark
+    public Object keyed___1_k_keys(Provider prov) {
+        return keyed(prov, 1_000);
+    }
+
+    @Benchmark
+    public Object chained_1_M_keys(Provider prov) {
+        return chained(prov, TASKS);
+    }
+
+    @Benchmark
+    public Object chained_1_k_keys(Provider prov) {
+        return chained(prov, 1_000);
+    }
+
+    @Benchmark
+    public Object unordered_______(Provider prov) {
+        final CompletableFuture<?>[] futures = new CompletableFuture[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            final int value = i;
+            futures[i] = prov.service.submit(() -> value + 1);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    private static Object keyed(Provider prov, int keys) {
+        final KeyedExecutor<Integer> keyed = prov.service.keyed();
+        final CompletableFuture<?>[] futures = new CompletableFuture[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            final int value = i;
+            futures[i] = keyed.submit(i % keys, () -> value + 1);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    private static Object chained(Provider prov, int keys) {
+        final ConcurrentHashMap<Integer, CompletableFuture<Integer>> last = new ConcurrentHashMap<>();
+        final CompletableFuture<?>[] futures = new CompletableFuture[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            final int value = i;
+            futures[i] = last.compute(i % keys, (key, previous) -> previous == null
+                    ? prov.service.submit(() -> value + 1)
+                    : previous.thenApplyAsync(result -> value + 1, prov.executor));
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Provider {
+
+        ExecutorService executor;
+        ExecutorCompletionService service;
+
+        @Setup(Level.Trial)
+        public void init() {
+            executor = Executors.newFixedThreadPool(4);
+            service = new ExecutorCompletionService(executor);
+        }
+
+        @TearDown(Level.Trial)
+        public void shutdown() {
+            service.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JmhKeyedExecutorBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,162 @@
+package paxel.lib;
+
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class RecyclingLinkedListTest {
+
+    @Test
+    public void testNodeReuse() {
+        RecyclingLinkedList.Pool pool = new RecyclingLinkedList.Pool(100);
+        RecyclingLinkedList<Long> list = new RecyclingLinkedList<>(pool);
+        for (long i = 0; i < 50; i++) {
+            list.add(i);
+        }
+        assertThat(pool.size(), is(0));
+
+        // removed nodes go back to the pool
+        for (int i = 0; i < 20; i++) {
+            list.remove(0);
+        }
+        assertThat(pool.size(), is(20));
+        // and are taken from there again
+        for (long i = 0; i < 10; i++) {
+            list.add(i);
+        }
+        assertThat(pool.size(), is(10));
+
+        list.clear();
+        assertThat(list.isEmpty(), is(true));
+        assertThat(pool.size(), is(50));
+
+        // the pool is bounded
+        for (long i = 0; i < 150; i++) {
+            list.add(i);
+        }
+        assertThat(pool.size(), is(0));
+        list.clear();
+        assertThat(pool.size(), is(100));
+    }
+
+    @Test
+    public void testMoveTo() {
+        RecyclingLinkedList.Pool pool = new RecyclingLinkedList.Pool(100);
+        RecyclingLinkedList<Long> source = new RecyclingLinkedList<>(pool);
+        RecyclingLinkedList<Long> target = new RecyclingLinkedList<>(pool);
+        LinkedList<Long> sourceComp = new LinkedList<>();
+        LinkedList<Long> targetComp = new LinkedList<>();
+        for (long i = 0; i < 100; i++) {
+            source.add(i);
+            sourceComp.add(i);
+        }
+        for (long i = 100; i < 110; i++) {
+            target.add(i);
+            targetComp.add(i);
+        }
+
+        source.moveTo(60, target);
+        List<Long> moved = sourceComp.subList(60, 100);
+        targetComp.addAll(moved);
+        moved.clear();
+        assertThat(source, is(sourceComp));
+        assertThat(target, is(targetComp));
+        // the nodes are relinked, not copied
+        assertThat(pool.size(), is(0));
+
+        // nothing to move
+        source.moveTo(60, target);
+        assertThat(source, is(sourceComp));
+        assertThat(target, is(targetComp));
+
+        // everything, both lists stay usable at their ends
+        source.moveTo(0, target);
+        targetComp.addAll(sourceComp);
+        sourceComp.clear();
+        assertThat(source.isEmpty(), is(true));
+        assertThat(target, is(targetComp));
+        source.add(-1L);
+        target.add(-2L);
+        assertThat(source, contains(-1L));
+        assertThat(target.getLast(), is(-2L));
+        assertThat(target.size(), is(111));
+    }
+
+    @Test
+    public void testIterator() {
+        RecyclingLinkedList<Long> list = new RecyclingLinkedList<>(new RecyclingLinkedList.Pool(100));
+        iterate(list, new Random(100), 2);
+    }
+
+    @Test
+    public void testSparseIterator() {
+        RecyclingLinkedList<Long> list = new RecyclingLinkedList<>(new RecyclingLinkedList.Pool(100));
+        for (int i = 0; i < 200; i++) {
+            list.add(i % 10 == 0 ? (long) i : null);
+        }
+        list.reshape();
+        assertThat(list.isSparse(), is(true));
+        iterate(list, new Random(100), 10);
+    }
+
+    /**
+     * Walks the list and a LinkedList with the same random iterator
+     * operations. One in nullRatio of the added and set values is non-null.
+     */
+    private static void iterate(RecyclingLinkedList<Long> list, Random r, int nullRatio) {
+        LinkedList<Long> comp = new LinkedList<>(list);
+        long next = 1_000;
+        for (int round = 0; round < 200; round++) {
+            int start = r.nextInt(comp.size() + 1);
+            ListIterator<Long> it = list.listIterator(start);
+            ListIterator<Long> compIt = comp.listIterator(start);
+            for (int i = 0; i < 20; i++) {
+                switch (r.nextInt(5)) {
+                    case 0 -> {
+                        if (compIt.hasNext()) {
+                            assertThat(it.next(), is(compIt.next()));
+                            if (r.nextBoolean()) {
+                                it.remove();
+                                compIt.remove();
+                            }
+                        }
+                    }
+                    case 1 -> {
+                        if (compIt.hasPrevious()) {
+                            assertThat(it.previous(), is(compIt.previous()));
+                            if (r.nextBoolean()) {
+                                it.remove();
+                                compIt.remove();
+                            }
+                        }
+                    }
+                    case 2 -> {
+                        if (compIt.hasNext()) {
+                            assertThat(it.next(), is(compIt.next()));
+                            Long value = r.nextInt(nullRatio) == 0 ? next++ : null;
+                            it.set(value);
+                            compIt.set(value);
+                        }
+                    }
+                    case 3 -> {
+                        Long value = r.nextInt(nullRatio) == 0 ? next++ : null;
+                        it.add(value);
+                        compIt.add(value);
+                    }
+                    default -> {
+                        assertThat(it.hasNext(), is(compIt.hasNext()));
+                        assertThat(it.nextIndex(), is(compIt.nextIndex()));
+                    }
+                }
+            }
+            assertThat(list, is(comp));
+            assertThat(list.size(), is(comp.size()));
+        }
+    }
+}